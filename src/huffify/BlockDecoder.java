@@ -0,0 +1,22 @@
+package huffify;
+
+/**
+ * <h2>BlockDecoder</h2>
+ * <p> This interface is implemented by the classes that decode the
+ * blocks of a HuffArchive encoded with a certain code table.
+ * @author mehai
+ * @see huffify.TableDecoder
+ */
+public interface BlockDecoder {
+
+	/**
+	 * Decodes a block. Stream s contains the characters s, s + streams,
+	 * s + 2 * streams... and starts right after the bits of stream s - 1.
+	 * @param words the encoded bits of the block (same order as in a
+	 * BitSet), with one more word after the last bit.
+	 * @param streamBits number of bits in every stream.
+	 * @param count number of characters in the block.
+	 * @return the decoded characters.
+	 */
+	byte[] decode(long[] words, int[] streamBits, int count);
+}
@@ -0,0 +1,73 @@
+package huffify;
+
+import java.util.*;
+
+/**
+ * <h2>EntropyCoder</h2>
+ * <p> This interface is implemented by the classes that encode the
+ * blocks of a HuffArchive. A coder is built from the set of a
+ * FrequencyTable (a code table of the archive) and every block keeps
+ * the number of the coder used to encode it:
+ * <p> <b>HUFFMAN</b> - huffify.HuffmanCoder, a whole number of bits
+ * for every character.
+ * <p> <b>TANS</b> - huffify.TansCoder, table based asymmetric numeral
+ * systems, a fractional number of bits for every character.
+ * @author mehai
+ * @see huffify.HuffmanCoder
+ * @see huffify.TansCoder
+ */
+public interface EntropyCoder {
+
+	//============================================
+	//CONSTANTS
+	//============================================
+	static final int HUFFMAN = 0;
+	static final int TANS = 1;
+	static final int NUM_CODERS = 2;
+
+	//============================================
+	//METHODS
+	//============================================
+
+	/**
+	 * Gets the number of bits needed to encode a text with the
+	 * frequencies in fq.
+	 * @param fq the FrequencyTable of the text.
+	 * @return the number of bits or -1 if a character of the text
+	 * can not be encoded.
+	 */
+	int numOfBits(FrequencyTable fq);
+
+	/**
+	 * Encodes a part of an array, split round-robin in streamBits.length
+	 * streams written one after the other.
+	 * @param data the bytes of the text.
+	 * @param off index of the first byte to encode.
+	 * @param len number of bytes to encode.
+	 * @param streamBits array with one element for every stream, used
+	 * to return the number of bits in every stream.
+	 * @return a BitSet that contains the encoded bytes.
+	 */
+	BitSet encode(byte[] data, int off, int len, int[] streamBits);
+
+	/**
+	 * Returns the decoder of the blocks encoded by this coder.
+	 * @return the decoder of the blocks encoded by this coder.
+	 */
+	BlockDecoder getDecoder();
+
+	/**
+	 * Creates a coder from a set of nodes (character + frequency).
+	 * @param coder the number of the coder (HUFFMAN or TANS).
+	 * @param set the set of nodes.
+	 * @return the new coder.
+	 */
+	static EntropyCoder create(int coder, HashSet<HuffNode> set) {
+
+		FrequencyTable fq = new FrequencyTable();
+		fq.set = set;
+		if(coder == TANS)
+			return new TansCoder(fq);
+		return new HuffmanCoder(fq);
+	}
+}
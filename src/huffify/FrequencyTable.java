@@ -25,8 +25,11 @@ public class FrequencyTable {
 	"Serialized file needed for decompression: ";
 	static final String MESSAGE_DESERIALIZE =
 	"Deserialized set from ";
+	static final String MESSAGE_NOT_ASCII =
+	"Only ASCII text files can be compressed";
 	static final int NUM_ASCII = 128;
 	static final int LINE_SEPARATOR = 10;
+	static final int SAMPLE_CHUNK = 1 << 12;
 	
 	//============================================
 	//INSTANCES
@@ -34,6 +37,7 @@ public class FrequencyTable {
 	private int []fq;
 	public HashSet<HuffNode> set; 
 	private File file;
+	private int numBits = -1;
 	
 	//============================================
 	//CONSTRUCTORS
@@ -53,6 +57,16 @@ public class FrequencyTable {
 		// TODO Auto-generated constructor stub
 	}
 	
+	/**
+	 * Used when the frequencies were already counted (like the exact
+	 * frequencies counted while encoding with a sampled table).
+	 * @param fq the frequency of every ASCII char.
+	 */
+	FrequencyTable(int[] fq) {
+		this.fq = fq;
+		createSet();
+	}
+	
 	//============================================
 	//METHDOS
 	//============================================
@@ -94,6 +108,68 @@ public class FrequencyTable {
 		createSet();
 	}
 	
+	/**
+	 * Estimates the frequency of each ASCII char by reading only a part
+	 * of the file: rate * length bytes, in chunks of (at most) SAMPLE_CHUNK
+	 * bytes spread evenly over the whole file, without overlapping. The counts are scaled to the
+	 * length of the file and every ASCII char gets at least frequency 1,
+	 * so the chars missing from the sample still get a (long) code.
+	 * @param rate the part of the file to be read (between 0 and 1).
+	 */
+	public void createSampledTable(double rate) {
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			long length = raf.length();
+			long sampleBytes = (long) Math.ceil(length * rate);
+			long chunks = Math.max(1, (sampleBytes + SAMPLE_CHUNK - 1) / SAMPLE_CHUNK);
+			long[] count = new long[NUM_ASCII];
+			long sampled = 0;
+			byte[] chunk = new byte[SAMPLE_CHUNK];
+			for(long i = 0; i < chunks; i++) {
+				long start = i * length / chunks;
+				//a chunk stops where the next one starts, so no byte is counted twice
+				int len = (int) Math.min(SAMPLE_CHUNK, (i + 1) * length / chunks - start);
+				raf.seek(start);
+				raf.readFully(chunk, 0, len);
+				for(int j = 0; j < len; j++) {
+					//the chars that are not ASCII are not counted
+					if(chunk[j] >= 0)
+						count[chunk[j]]++;
+				}
+				sampled += len;
+			}
+			raf.close();
+			double scale = sampled == 0 ? 1 : (double) length / sampled;
+			for(int i = 0; i < NUM_ASCII; i++) {
+				//the limit keeps the sum of all frequencies an int
+				fq[i] = (int) Math.max(1, Math.min(Integer.MAX_VALUE / NUM_ASCII,
+						Math.round(count[i] * scale)));
+			}
+		}catch(IOException e) {
+			System.out.println(e);
+		}
+		createSet();
+	}
+	
+	/**
+	 * Calculates the frequency of each ASCII char in a part of an
+	 * array that was already read in memory (used for the blocks of
+	 * an archive, so the file is not read a second time).
+	 * @param data the bytes of the text.
+	 * @param off index of the first byte to count.
+	 * @param len number of bytes to count.
+	 * @throws IllegalArgumentException if the bytes are not ASCII text.
+	 */
+	public void createTable(byte[] data, int off, int len) {
+		fq = new int[NUM_ASCII];
+		for(int i = off; i < off + len; i++) {
+			if(data[i] < 0)
+				throw new IllegalArgumentException(MESSAGE_NOT_ASCII);
+			fq[data[i]]++;
+		}
+		createSet();
+	}
+	
 	/**
 	 * Serializes the HashSet into a .ser file.
 	 * @param filename name of the [filename].ser file
@@ -114,7 +190,32 @@ public class FrequencyTable {
 	}
 	
 	/**
-	 * Deserializes the HashSet from the .ser file.
+	 * Serializes the HashSet into a .ser file, followed by the number
+	 * of bits of the encoded text. Used when the frequencies in the set
+	 * are not exact, so the number of bits can not be calculated from
+	 * them at decompression.
+	 * @param filename name of the [filename].ser file
+	 * @param numBits number of bits of the encoded text.
+	 */
+	public void serializeSet(String filename, int numBits) {
+		
+		try {
+	         FileOutputStream fileOut = 
+	         new FileOutputStream(filename);
+	         ObjectOutputStream out = new ObjectOutputStream(fileOut);
+	         out.writeObject(set);
+	         out.writeInt(numBits);
+	         out.close();
+	         fileOut.close();
+	         System.out.println(MESSAGE_SERIALIZE + filename);
+	      } catch (IOException i) {
+	         i.printStackTrace();
+	      }
+	}
+	
+	/**
+	 * Deserializes the HashSet from the .ser file (and the number
+	 * of bits of the encoded text, if the file has it).
 	 * @param filename name of the [filename].ser file.
 	 */
 	@SuppressWarnings("unchecked")
@@ -124,6 +225,11 @@ public class FrequencyTable {
 	         FileInputStream fileIn = new FileInputStream(filename);
 	         ObjectInputStream in = new ObjectInputStream(fileIn);
 	         set = (HashSet<HuffNode>)in.readObject();
+	         try {
+	        	 numBits = in.readInt();
+	         } catch (EOFException e) {
+	        	 numBits = -1;
+	         }
 	         in.close();
 	         fileIn.close();
 	         System.out.println(MESSAGE_DESERIALIZE + filename);
@@ -162,6 +268,14 @@ public class FrequencyTable {
 		return NUM_ASCII;
 	}
 	
+	/**
+	 * @return number of bits of the encoded text kept in the .ser
+	 * file or -1 if it was not kept.
+	 */
+	public int getNumBits() {
+		return numBits;
+	}
+	
 	/**
 	 * @param i index.
 	 * @return frequency of char at index i.
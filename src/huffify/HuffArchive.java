@@ -0,0 +1,999 @@
+package huffify;
+
+import java.util.*;
+
+import java.io.*;
+import java.nio.file.*;
+
+/**
+ * <h2>HuffArchive</h2>
+ * <p> This class holds one or more compressed files (members) that
+ * can grow over time. The text added to the archive is gathered in
+ * blocks of at most BLOCK_SIZE characters and every block is encoded on
+ * its own, so new data can be appended without compressing the old data
+ * again. Small files are packed together in one block, a member only
+ * knows its pieces (a block, where the piece starts in it and how many
+ * characters it has). The archive looks like this:
+ * <p> [header][table][block][block]...[pieces][directory]...
+ * <p> Everything after the header is only appended, never changed:
+ * <p> <b>table</b> - a code table (the characters and their
+ * frequencies) and the position of the table written before it.
+ * <p> <b>block</b> - the HuffBlock (the position of its table, the
+ * coder, the number of characters, the bits of every stream and the
+ * set of its characters) followed by the encoded bits.
+ * <p> <b>pieces</b> - the pieces of a member, except the last one, and
+ * the position of its pieces written before them.
+ * <p> <b>directory</b> - a part of the central directory: one entry of
+ * ENTRY_SIZE bytes for every member (the position of its name, the
+ * number of its bytes, the position of its pieces and its last piece),
+ * sorted by name, followed by the names, and the position of the
+ * directory written before it. A member is found by a binary search
+ * that reads only the entries and names it compares.
+ * <p> An append writes a directory with only the members it changed.
+ * The directories before it are merged in it while they have at most
+ * twice as many members, so every directory has more than twice the
+ * members of the next one: there are only a few directories to search
+ * (from the last one, where the newest entry of a member is) and an
+ * entry is copied only a few times.
+ * <p> The header has a fixed size and tells where the last directory is.
+ * It is changed only after everything else is on the disk, so if the
+ * program stops in the middle of an append the archive still has its
+ * old directory (what was written after it is ignored).
+ * <p> Every new block gets its own code table, unless one of the last
+ * tables of the archive (of any member) can encode it in (almost) the
+ * same number of bits. This way small files with similar frequencies
+ * share one code table.
+ * <p> Every block also keeps the set of its characters, so a search
+ * decodes only the blocks that can contain the searched text.
+ * <p> A block is encoded by an EntropyCoder (Huffman or tANS) made from
+ * its code table, the number of the coder is kept in the HuffBlock.
+ * <p> The characters of a block can be split in more streams that
+ * share the code table, so they can be decoded at the same time
+ * (see <code>TableDecoder</code>).
+ * @author mehai
+ * @see huffify.HuffBlock
+ * @see huffify.HuffMember
+ * @see huffify.EntropyCoder
+ * @see huffify.FrequencyTable
+ * @see huffify.TableDecoder
+ */
+public class HuffArchive {
+
+	//============================================
+	//CONSTANTS
+	//============================================
+	static final String MESSAGE_CORRUPTED = "Not a valid archive: ";
+	static final String MESSAGE_NAME = "Not a path in the current directory: ";
+	static final int MAGIC = 0x48554641;
+	static final int VERSION = 4;
+	static final int HEADER_SIZE = 16;
+	//number of members, size, previous directory, last table
+	static final int DIRECTORY_HEADER_SIZE = 24;
+	//name, bytes, previous pieces, block, start, length
+	static final int ENTRY_SIZE = 36;
+	//previous pieces, number of pieces
+	static final int PIECES_HEADER_SIZE = 12;
+	//block, start, length
+	static final int PIECE_SIZE = 16;
+	//previous table, number of characters
+	static final int TABLE_HEADER_SIZE = 12;
+	//character, frequency
+	static final int TABLE_ENTRY_SIZE = 5;
+	//size, table, coder, number of streams, length (then the bits of
+	//every stream and the characters)
+	static final int BLOCK_HEADER_SIZE = 18;
+	static final int BLOCK_SIZE = 1 << 16;
+	//number of bits a table entry takes in the archive
+	static final int TABLE_ENTRY_BITS = TABLE_ENTRY_SIZE * 8;
+	//number of the last tables a new block can share
+	static final int SHARED_TABLES = 16;
+	static final int INTERLEAVED_STREAMS = 4;
+	//number of decoded blocks kept, for the members sharing a block
+	static final int DECODED_BLOCKS = 16;
+	//the block of a piece that is not written yet
+	static final long PENDING = -1;
+
+	//============================================
+	//INSTANCES
+	//============================================
+	private String filename;
+	private RandomAccessFile file;
+	//where the next table, block or directory is written
+	private long end;
+	private boolean modified;
+	private int streams = 1;
+	private int coder = EntropyCoder.HUFFMAN;
+	//the directories, from the last one
+	private ArrayList<Long> directories;
+	private ArrayList<Integer> counts;
+	private ArrayList<Integer> sizes;
+	private long lastTable;
+	//the last SHARED_TABLES tables, read only when a block is added
+	private ArrayList<Long> recentTables;
+	//the text of the block that is not written yet
+	private byte[] pending;
+	private int pendingLength;
+	private long pendingTable;
+	private ArrayList<HuffMember> pendingMembers;
+	private ArrayList<Integer> pendingPieces;
+	//the members changed since the archive was opened
+	private TreeMap<String, HuffMember> changed;
+	private HashMap<Long, HashSet<HuffNode>> tables;
+	private HashMap<Long, HuffBlock> blocks;
+	private LinkedHashMap<Long, byte[]> decoded;
+	//the coders and decoders are kept by table * NUM_CODERS + coder
+	private HashMap<Long, EntropyCoder> coders;
+	private HashMap<Long, BlockDecoder> decoders;
+
+	//============================================
+	//CONSTRUCTOR
+	//============================================
+
+	/**
+	 * Opens the archive and reads its header. If the archive is
+	 * opened for writing and does not exist, an empty one is created
+	 * (with a valid header).
+	 * @param filename name of the archive.
+	 * @param write true if blocks are going to be appended.
+	 * @throws IOException if the file is not a valid archive.
+	 */
+	public HuffArchive(String filename, boolean write) throws IOException {
+
+		this.filename = filename;
+		this.file = new RandomAccessFile(filename, write ? "rw" : "r");
+		this.directories = new ArrayList<Long>();
+		this.counts = new ArrayList<Integer>();
+		this.sizes = new ArrayList<Integer>();
+		this.pendingMembers = new ArrayList<HuffMember>();
+		this.pendingPieces = new ArrayList<Integer>();
+		this.changed = new TreeMap<String, HuffMember>();
+		this.tables = new HashMap<Long, HashSet<HuffNode>>();
+		this.blocks = new HashMap<Long, HuffBlock>();
+		this.decoded = new LinkedHashMap<Long, byte[]>(DECODED_BLOCKS, 0.75f, true);
+		this.coders = new HashMap<Long, EntropyCoder>();
+		this.decoders = new HashMap<Long, BlockDecoder>();
+		if(file.length() == 0 && write) {
+			//new archive, the header is on the disk before any block
+			//is written
+			this.end = HEADER_SIZE;
+			writeHeader(0);
+		}else {
+			readHeader();
+		}
+	}
+
+	//============================================
+	//METHODS
+	//============================================
+
+	/**
+	 * Reads the header and the headers of the directories.
+	 * @throws IOException if the file is not a valid archive.
+	 */
+	private void readHeader() throws IOException {
+
+		long length = file.length();
+		if(length < HEADER_SIZE)
+			throw new IOException(MESSAGE_CORRUPTED + filename);
+		file.seek(0);
+		int magic = file.readInt();
+		int version = file.readInt();
+		long directory = file.readLong();
+		if(magic != MAGIC || version != VERSION)
+			throw new IOException(MESSAGE_CORRUPTED + filename);
+
+		//anything after the last directory was left by an append that
+		//did not end
+		end = HEADER_SIZE;
+		long limit = length;
+		while(directory != 0) {
+			if(directory < HEADER_SIZE || directory > limit - DIRECTORY_HEADER_SIZE)
+				throw new IOException(MESSAGE_CORRUPTED + filename);
+			DataInputStream in = read(directory, DIRECTORY_HEADER_SIZE);
+			int count = in.readInt();
+			int size = in.readInt();
+			long previous = in.readLong();
+			long table = in.readLong();
+			if(count < 0 || size < DIRECTORY_HEADER_SIZE + (long) count * ENTRY_SIZE
+					|| directory + size > limit)
+				throw new IOException(MESSAGE_CORRUPTED + filename);
+			if(directories.isEmpty()) {
+				end = directory + size;
+				lastTable = table;
+			}
+			directories.add(directory);
+			counts.add(count);
+			sizes.add(size);
+			//every directory is written after the one before it
+			limit = directory;
+			directory = previous;
+		}
+	}
+
+	/**
+	 * Writes the header and waits until it is on the disk.
+	 * @param directory position of the last directory (0 if there
+	 * is none).
+	 * @throws IOException if the archive can not be written.
+	 */
+	private void writeHeader(long directory) throws IOException {
+
+		file.seek(0);
+		file.writeInt(MAGIC);
+		file.writeInt(VERSION);
+		file.writeLong(directory);
+		file.getFD().sync();
+	}
+
+	/**
+	 * Reads bytes of the archive with one call.
+	 * @param offset position of the first byte.
+	 * @param length number of bytes.
+	 * @return a stream over the bytes.
+	 * @throws IOException if the archive can not be read.
+	 */
+	private DataInputStream read(long offset, int length) throws IOException {
+
+		byte[] bytes = new byte[length];
+		file.seek(offset);
+		file.readFully(bytes);
+		return new DataInputStream(new ByteArrayInputStream(bytes));
+	}
+
+	/**
+	 * Writes bytes after everything else in the archive.
+	 * @param bytes the bytes to be written.
+	 * @return the position of the bytes.
+	 * @throws IOException if the archive can not be written.
+	 */
+	private long write(ByteArrayOutputStream bytes) throws IOException {
+
+		long offset = end;
+		file.seek(offset);
+		file.write(bytes.toByteArray());
+		end += bytes.size();
+		return offset;
+	}
+
+	/**
+	 * Writes the pieces of the changed members and a directory with
+	 * them after the last block, then the header that points to it.
+	 * The last directories are merged in the new one while they do not
+	 * have more than twice its members. The old directories stay where
+	 * they were until the header is changed, so the archive is valid if
+	 * the program stops at any point.
+	 * @throws IOException if the archive can not be written.
+	 */
+	private void writeDirectory() throws IOException {
+
+		TreeMap<String, HuffMember> members = new TreeMap<String, HuffMember>(changed);
+		int merged = 0;
+		while(merged < directories.size() && counts.get(merged) <= 2 * members.size()) {
+			readDirectory(merged, members);
+			merged++;
+		}
+		long previous = merged < directories.size() ? directories.get(merged) : 0;
+
+		ByteArrayOutputStream entries = new ByteArrayOutputStream();
+		ByteArrayOutputStream names = new ByteArrayOutputStream();
+		DataOutputStream entriesOut = new DataOutputStream(entries);
+		DataOutputStream namesOut = new DataOutputStream(names);
+		int namesOffset = DIRECTORY_HEADER_SIZE + members.size() * ENTRY_SIZE;
+		for(HuffMember member : members.values()) {
+			int n = member.getNumPieces();
+			entriesOut.writeInt(namesOffset + names.size());
+			entriesOut.writeLong(member.getCovered());
+			entriesOut.writeLong(n > 1 ? writePieces(member) : member.getPrevious());
+			entriesOut.writeLong(n > 0 ? member.getBlock(n - 1) : 0);
+			entriesOut.writeInt(n > 0 ? member.getStart(n - 1) : 0);
+			entriesOut.writeInt(n > 0 ? member.getLength(n - 1) : 0);
+			namesOut.writeUTF(member.getName());
+		}
+
+		ByteArrayOutputStream directory = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(directory);
+		out.writeInt(members.size());
+		out.writeInt(namesOffset + names.size());
+		out.writeLong(previous);
+		out.writeLong(lastTable);
+		entries.writeTo(out);
+		names.writeTo(out);
+		long offset = write(directory);
+		file.setLength(end);
+		file.getFD().sync();
+		writeHeader(offset);
+
+		directories.subList(0, merged).clear();
+		counts.subList(0, merged).clear();
+		sizes.subList(0, merged).clear();
+		directories.add(0, offset);
+		counts.add(0, members.size());
+		sizes.add(0, directory.size());
+		changed.clear();
+	}
+
+	/**
+	 * Reads all the members of a directory and adds the ones that are
+	 * not in the map yet.
+	 * @param d index of the directory, from the last one.
+	 * @param members the map the members are added to.
+	 * @throws IOException if the archive can not be read.
+	 */
+	private void readDirectory(int d, TreeMap<String, HuffMember> members)
+			throws IOException {
+
+		int size = sizes.get(d);
+		byte[] bytes = new byte[size];
+		file.seek(directories.get(d));
+		file.readFully(bytes);
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+		in.skipBytes(DIRECTORY_HEADER_SIZE);
+		for(int i = 0; i < counts.get(d); i++) {
+			int position = in.readInt();
+			if(position < 0 || position >= size)
+				throw new IOException(MESSAGE_CORRUPTED + filename);
+			String name = new DataInputStream(new ByteArrayInputStream(bytes,
+					position, size - position)).readUTF();
+			HuffMember member = readEntry(name, in);
+			if(!members.containsKey(name))
+				members.put(name, member);
+		}
+	}
+
+	/**
+	 * Reads the rest of an entry of the directory, after the position
+	 * of the name.
+	 * @param name name of the member.
+	 * @param in the stream the entry is read from.
+	 * @return the member, with only its last piece.
+	 * @throws IOException if the archive can not be read.
+	 */
+	private HuffMember readEntry(String name, DataInputStream in) throws IOException {
+
+		long covered = in.readLong();
+		long previous = in.readLong();
+		long block = in.readLong();
+		int start = in.readInt();
+		int length = in.readInt();
+		if(length < 0 || covered < length)
+			throw new IOException(MESSAGE_CORRUPTED + filename);
+		HuffMember member = new HuffMember(name, covered - length, previous);
+		if(block != 0)
+			member.addPiece(block, start, length);
+		return member;
+	}
+
+	/**
+	 * Writes all the pieces of a member, except the last one (which
+	 * is kept in its entry of the directory).
+	 * @param member the member.
+	 * @return the position of the pieces.
+	 * @throws IOException if the archive can not be written.
+	 */
+	private long writePieces(HuffMember member) throws IOException {
+
+		int n = member.getNumPieces() - 1;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeLong(member.getPrevious());
+		out.writeInt(n);
+		for(int i = 0; i < n; i++) {
+			out.writeLong(member.getBlock(i));
+			out.writeInt(member.getStart(i));
+			out.writeInt(member.getLength(i));
+		}
+		return write(bytes);
+	}
+
+	/**
+	 * Finds a member in the central directories (from the last one), by
+	 * a binary search on the entries.
+	 * @param name name of the member.
+	 * @return the member, with only its last piece, or null if there
+	 * is no member with this name.
+	 * @throws IOException if the archive can not be read.
+	 */
+	private HuffMember findMember(String name) throws IOException {
+
+		for(int d = 0; d < directories.size(); d++) {
+			long directory = directories.get(d);
+			int low = 0;
+			int high = counts.get(d) - 1;
+			while(low <= high) {
+				int middle = (low + high) >>> 1;
+				DataInputStream in = read(directory + DIRECTORY_HEADER_SIZE
+						+ (long) middle * ENTRY_SIZE, ENTRY_SIZE);
+				int position = in.readInt();
+				if(position < 0 || position >= sizes.get(d))
+					throw new IOException(MESSAGE_CORRUPTED + filename);
+				file.seek(directory + position);
+				int compare = file.readUTF().compareTo(name);
+				if(compare == 0)
+					return readEntry(name, in);
+				if(compare < 0)
+					low = middle + 1;
+				else
+					high = middle - 1;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Adds the given characters at the end of a member (the member
+	 * is added to the directory if it is new). The characters go in the
+	 * block that is not written yet, which is encoded and written when
+	 * it has BLOCK_SIZE characters. The directory is written in the
+	 * file by <code>close()</code>.
+	 * @param name name of the member.
+	 * @param data the bytes of the new text.
+	 * @param off index of the first new byte.
+	 * @param len number of new bytes.
+	 * @throws IOException if the archive can not be written.
+	 */
+	public void append(String name, byte[] data, int off, int len) throws IOException {
+
+		HuffMember member = changed.get(name);
+		if(member == null) {
+			member = findMember(name);
+			if(member == null)
+				member = new HuffMember(name);
+			changed.put(name, member);
+		}
+		if(pending == null)
+			pending = new byte[BLOCK_SIZE];
+		while(len > 0) {
+			if(pendingLength == 0)
+				pendingTable = lastTable(member);
+			int n = Math.min(len, BLOCK_SIZE - pendingLength);
+			System.arraycopy(data, off, pending, pendingLength, n);
+			if(member.addPiece(PENDING, pendingLength, n)) {
+				pendingMembers.add(member);
+				pendingPieces.add(member.getNumPieces() - 1);
+			}
+			pendingLength += n;
+			off += n;
+			len -= n;
+			if(pendingLength == BLOCK_SIZE)
+				appendBlock();
+		}
+		modified = true;
+	}
+
+	/**
+	 * Returns the table of the last block of a member.
+	 * @param member the member.
+	 * @return the position of the table or 0 if the member has no
+	 * written block.
+	 * @throws IOException if the archive can not be read.
+	 */
+	private long lastTable(HuffMember member) throws IOException {
+
+		int n = member.getNumPieces();
+		if(n == 0 || member.getBlock(n - 1) == PENDING)
+			return 0;
+		return getBlock(member.getBlock(n - 1)).getTable();
+	}
+
+	/**
+	 * Encodes the block that is not written yet and writes it after
+	 * everything else in the file.
+	 * @throws IOException if the archive can not be written.
+	 */
+	private void appendBlock() throws IOException {
+
+		FrequencyTable fq = new FrequencyTable();
+		fq.createTable(pending, 0, pendingLength);
+		long table = chooseTable(fq);
+		int[] streamBits = new int[streams];
+		BitSet encoded = getCoder(table, coder).encode(pending, 0, pendingLength,
+				streamBits);
+		byte[] bits = encoded.toByteArray();
+		long[] symbols = symbolsOf(fq.set);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(bits.length);
+		out.writeLong(table);
+		out.writeByte(coder);
+		out.writeByte(streams);
+		out.writeInt(pendingLength);
+		for(int stream : streamBits) {
+			out.writeInt(stream);
+		}
+		for(long word : symbols) {
+			out.writeLong(word);
+		}
+		int header = bytes.size();
+		out.write(bits);
+		long block = write(bytes);
+		blocks.put(block, new HuffBlock(block + header, bits.length, table, coder,
+				pendingLength, streamBits, symbols));
+
+		for(int i = 0; i < pendingMembers.size(); i++) {
+			pendingMembers.get(i).setBlock(pendingPieces.get(i), block);
+		}
+		pendingMembers.clear();
+		pendingPieces.clear();
+		pendingLength = 0;
+	}
+
+	/**
+	 * Chooses the code table of a new block. The candidates are the
+	 * table of the previous block of the member the new block starts with
+	 * and the last SHARED_TABLES tables of the archive. The candidate
+	 * that needs the fewest bits (with the coder of the archive) is
+	 * reused if it has codes for all the characters of the new block and
+	 * it does not need more bits than a new table
+	 * would need (counting the bits to store the new table in the archive
+	 * too). Otherwise a new table is written in the archive.
+	 * @param fq the FrequencyTable of the new block.
+	 * @return the position of the table to be used.
+	 * @throws IOException if the archive can not be used.
+	 */
+	private long chooseTable(FrequencyTable fq) throws IOException {
+
+		EntropyCoder own = EntropyCoder.create(coder, fq.set);
+		int bestBits = own.numOfBits(fq) + fq.set.size() * TABLE_ENTRY_BITS;
+		long best = 0;
+
+		ArrayList<Long> candidates = new ArrayList<Long>(getRecentTables());
+		if(pendingTable != 0)
+			candidates.add(pendingTable);
+		for(long candidate : candidates) {
+			int bits = getCoder(candidate, coder).numOfBits(fq);
+			if(bits >= 0 && bits <= bestBits) {
+				bestBits = bits;
+				best = candidate;
+			}
+		}
+		if(best != 0)
+			return best;
+
+		long table = writeTable(fq.set);
+		coders.put(table * EntropyCoder.NUM_CODERS + coder, own);
+		return table;
+	}
+
+	/**
+	 * Returns the last SHARED_TABLES tables of the archive, reading
+	 * them only the first time they are needed.
+	 * @return the positions of the tables.
+	 * @throws IOException if the archive can not be read.
+	 */
+	private ArrayList<Long> getRecentTables() throws IOException {
+
+		if(recentTables == null) {
+			recentTables = new ArrayList<Long>();
+			for(long table = lastTable; table != 0 && recentTables.size() < SHARED_TABLES;
+					table = readTable(table)) {
+				recentTables.add(0, table);
+			}
+		}
+		return recentTables;
+	}
+
+	/**
+	 * Writes a code table after everything else in the archive.
+	 * @param set the set of nodes of the table.
+	 * @return the position of the table.
+	 * @throws IOException if the archive can not be written.
+	 */
+	private long writeTable(HashSet<HuffNode> set) throws IOException {
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeLong(lastTable);
+		out.writeInt(set.size());
+		for(HuffNode node : set) {
+			out.writeByte(node.getCharacter());
+			out.writeInt(node.getFrequency());
+		}
+		long table = write(bytes);
+		tables.put(table, set);
+		lastTable = table;
+		recentTables.add(table);
+		if(recentTables.size() > SHARED_TABLES)
+			recentTables.remove(0);
+		return table;
+	}
+
+	/**
+	 * Reads a code table from the archive.
+	 * @param table position of the table.
+	 * @return the position of the table written before it (0 if
+	 * there is none).
+	 * @throws IOException if the archive can not be read.
+	 */
+	private long readTable(long table) throws IOException {
+
+		DataInputStream in = read(table, TABLE_HEADER_SIZE);
+		long previous = in.readLong();
+		int count = in.readInt();
+		if(previous < 0 || previous >= table || count < 0
+				|| count > FrequencyTable.NUM_ASCII)
+			throw new IOException(MESSAGE_CORRUPTED + filename);
+		in = read(table + TABLE_HEADER_SIZE, count * TABLE_ENTRY_SIZE);
+		HashSet<HuffNode> set = new HashSet<HuffNode>();
+		for(int i = 0; i < count; i++) {
+			char c = (char) in.readUnsignedByte();
+			set.add(new HuffNode(c, in.readInt()));
+		}
+		tables.put(table, set);
+		return previous;
+	}
+
+	/**
+	 * Returns the coder of a table, building it only the first
+	 * time it is needed.
+	 * @param table position of the table.
+	 * @param coder the number of the coder.
+	 * @return the EntropyCoder of the table.
+	 * @throws IOException if the table can not be read.
+	 */
+	public EntropyCoder getCoder(long table, int coder) throws IOException {
+
+		long key = table * EntropyCoder.NUM_CODERS + coder;
+		EntropyCoder entropyCoder = coders.get(key);
+		if(entropyCoder == null) {
+			if(!tables.containsKey(table))
+				readTable(table);
+			entropyCoder = EntropyCoder.create(coder, tables.get(table));
+			coders.put(key, entropyCoder);
+		}
+		return entropyCoder;
+	}
+
+	/**
+	 * Creates the set of characters in a set of nodes, as bits
+	 * (bit c is 1 if character c is in the set).
+	 * @param set the set of nodes.
+	 * @return the characters as a set of bits.
+	 */
+	static long[] symbolsOf(Set<HuffNode> set) {
+
+		long[] symbols = new long[FrequencyTable.NUM_ASCII / 64];
+		for(HuffNode node : set) {
+			char c = node.getCharacter();
+			symbols[c >>> 6] |= 1L << c;
+		}
+		return symbols;
+	}
+
+	/**
+	 * Finds all the positions of a text in a member, without decoding
+	 * the pieces that can not contain it. A piece is decoded only if:
+	 * <p> 1. its block has all the characters of the text (the text can
+	 * be inside the piece) or
+	 * <p> 2. it is part of a row of pieces that can hold the text across
+	 * their borders: the block of every piece of the row has characters
+	 * of the text, together they have all of them and the pieces between
+	 * the first and the last one are shorter than the text.
+	 * <p> The last pattern.length - 1 characters of a decoded piece are
+	 * kept, so the text is found across the border with the next piece.
+	 * @param member the member to search in.
+	 * @param pattern the text to be found.
+	 * @return the positions (in the member) where the text starts.
+	 * @throws IOException if the archive can not be read.
+	 */
+	public ArrayList<Long> search(HuffMember member, byte[] pattern) throws IOException {
+
+		ArrayList<Long> found = new ArrayList<Long>();
+		int n = member.getNumPieces();
+		long[] wanted = new long[FrequencyTable.NUM_ASCII / 64];
+		for(byte b : pattern) {
+			//no block has characters that are not ASCII
+			if(b < 0)
+				return found;
+			wanted[b >>> 6] |= 1L << b;
+		}
+
+		//which characters of the text every piece can have
+		long[][] has = new long[n][];
+		for(int i = 0; i < n; i++) {
+			long[] symbols = getBlock(member.getBlock(i)).getSymbols();
+			has[i] = new long[wanted.length];
+			for(int w = 0; w < wanted.length; w++) {
+				has[i][w] = symbols[w] & wanted[w];
+			}
+		}
+		boolean[] needed = new boolean[n];
+		for(int first = 0; first < n; first++) {
+			long[] union = has[first].clone();
+			if(Arrays.equals(union, wanted)) {
+				needed[first] = true;
+				continue;
+			}
+			long between = 0;
+			for(int last = first + 1; last < n && between < pattern.length; last++) {
+				if(isEmpty(has[last]) || isEmpty(has[first]))
+					break;
+				for(int w = 0; w < wanted.length; w++) {
+					union[w] |= has[last][w];
+				}
+				if(Arrays.equals(union, wanted)) {
+					for(int i = first; i <= last; i++) {
+						needed[i] = true;
+					}
+				}
+				between += member.getLength(last);
+			}
+		}
+
+		byte[] carry = new byte[0];
+		long start = 0;
+		for(int i = 0; i < n; i++) {
+			int length = member.getLength(i);
+			if(!needed[i]) {
+				carry = new byte[0];
+				start += length;
+				continue;
+			}
+			byte[] decoded = decodeBlock(member.getBlock(i));
+			byte[] text = new byte[carry.length + length];
+			System.arraycopy(carry, 0, text, 0, carry.length);
+			System.arraycopy(decoded, member.getStart(i), text, carry.length, length);
+			//the matches that end in the carry were found before
+			for(int j = Math.max(0, carry.length - pattern.length + 1);
+					j + pattern.length <= text.length; j++) {
+				int k = 0;
+				while(k < pattern.length && text[j + k] == pattern[k]) {
+					k++;
+				}
+				if(k == pattern.length)
+					found.add(start - carry.length + j);
+			}
+			int keep = Math.min(pattern.length - 1, text.length);
+			carry = Arrays.copyOfRange(text, text.length - keep, text.length);
+			start += length;
+		}
+		return found;
+	}
+
+	/**
+	 * Checks if a set of characters (as bits) is empty.
+	 * @param symbols the set of characters.
+	 * @return true if there is no character in the set.
+	 */
+	private static boolean isEmpty(long[] symbols) {
+
+		for(long word : symbols) {
+			if(word != 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the decoder of a table, building it only the first
+	 * time it is needed.
+	 * @param table position of the table.
+	 * @param coder the number of the coder.
+	 * @return the decoder of the table.
+	 * @throws IOException if the table can not be read.
+	 */
+	public BlockDecoder getDecoder(long table, int coder) throws IOException {
+
+		long key = table * EntropyCoder.NUM_CODERS + coder;
+		BlockDecoder decoder = decoders.get(key);
+		if(decoder == null) {
+			decoder = getCoder(table, coder).getDecoder();
+			decoders.put(key, decoder);
+		}
+		return decoder;
+	}
+
+	/**
+	 * Returns the information about a block, reading it from the
+	 * archive only the first time it is needed.
+	 * @param block position of the block.
+	 * @return the HuffBlock.
+	 * @throws IOException if the archive can not be read.
+	 */
+	public HuffBlock getBlock(long block) throws IOException {
+
+		HuffBlock huffBlock = blocks.get(block);
+		if(huffBlock != null)
+			return huffBlock;
+		DataInputStream in = read(block, BLOCK_HEADER_SIZE);
+		int size = in.readInt();
+		long table = in.readLong();
+		int blockCoder = in.readUnsignedByte();
+		int blockStreams = in.readUnsignedByte();
+		int length = in.readInt();
+		if(size < 0 || table < HEADER_SIZE || table >= block
+				|| blockCoder >= EntropyCoder.NUM_CODERS || blockStreams == 0
+				|| length < 0 || length > BLOCK_SIZE)
+			throw new IOException(MESSAGE_CORRUPTED + filename);
+		int[] streamBits = new int[blockStreams];
+		long[] symbols = new long[FrequencyTable.NUM_ASCII / 64];
+		in = read(block + BLOCK_HEADER_SIZE, streamBits.length * 4 + symbols.length * 8);
+		for(int i = 0; i < streamBits.length; i++) {
+			streamBits[i] = in.readInt();
+		}
+		for(int i = 0; i < symbols.length; i++) {
+			symbols[i] = in.readLong();
+		}
+		huffBlock = new HuffBlock(block + BLOCK_HEADER_SIZE + streamBits.length * 4
+				+ symbols.length * 8, size, table, blockCoder, length, streamBits, symbols);
+		blocks.put(block, huffBlock);
+		return huffBlock;
+	}
+
+	/**
+	 * Reads the encoded bits of a block from the archive. The bits
+	 * are in the same order as in a BitSet and there is one more
+	 * word after the last bit, so the decoder can read past it.
+	 * @param block the block to be read.
+	 * @return the words containing the encoded text of the block.
+	 * @throws IOException if the archive can not be read.
+	 */
+	public long[] readBlock(HuffBlock block) throws IOException {
+
+		byte[] bytes = new byte[block.getSize()];
+		file.seek(block.getOffset());
+		file.readFully(bytes);
+		//the BitSet did not write its last zero bytes
+		long[] words = new long[Math.max(bytes.length / 8, block.getNumBits() / 64) + 2];
+		for(int i = 0; i < bytes.length; i++) {
+			words[i >>> 3] |= (bytes[i] & 0xFFL) << ((i & 7) * 8);
+		}
+		return words;
+	}
+
+	/**
+	 * Reads and decodes a block (as kept in <code>HuffMember.getBlock()
+	 * </code>). The last DECODED_BLOCKS decoded blocks are kept, so the
+	 * members that share a block do not decode it again.
+	 * @param block position of the block.
+	 * @return the characters of the block.
+	 * @throws IOException if the archive can not be read.
+	 */
+	public byte[] decodeBlock(long block) throws IOException {
+
+		byte[] text = decoded.get(block);
+		if(text != null)
+			return text;
+		HuffBlock huffBlock = getBlock(block);
+		long[] words = readBlock(huffBlock);
+		text = getDecoder(huffBlock.getTable(), huffBlock.getCoder()).decode(words,
+				huffBlock.getStreamBits(), huffBlock.getLength());
+		decoded.put(block, text);
+		if(decoded.size() > DECODED_BLOCKS)
+			decoded.remove(decoded.keySet().iterator().next());
+		return text;
+	}
+
+	/**
+	 * Sets the coder of the new blocks.
+	 * @param coder the number of the coder (EntropyCoder.HUFFMAN
+	 * or EntropyCoder.TANS).
+	 */
+	public void setCoder(int coder) {
+		this.coder = coder;
+	}
+
+	/**
+	 * Sets the number of streams every new block is split in.
+	 * @param streams number of streams (1 means no interleaving).
+	 */
+	public void setStreams(int streams) {
+		this.streams = streams;
+	}
+
+	/**
+	 * Returns the name a file gets in an archive: its path from the
+	 * current directory, without "." and "dir/.." parts and with '/'
+	 * between the directories.
+	 * @param filename name of the file.
+	 * @return the name of the member.
+	 * @throws IllegalArgumentException if the path is absolute or it
+	 * goes out of the current directory.
+	 */
+	public static String memberName(String filename) {
+
+		Path path = Paths.get(filename).normalize();
+		if(path.isAbsolute() || path.getRoot() != null || path.startsWith("..")
+				|| path.toString().isEmpty())
+			throw new IllegalArgumentException(MESSAGE_NAME + filename);
+		return path.toString().replace(File.separatorChar, '/');
+	}
+
+	/**
+	 * Returns the name of the only member of an archive named after one
+	 * file: the name of the file without its directories.
+	 * @param filename name of the file.
+	 * @return the name of the member.
+	 */
+	public static String singleName(String filename) {
+		return new File(filename).getName();
+	}
+
+	/**
+	 * Finds a member in the central directory and reads all its pieces.
+	 * @param name name of the member.
+	 * @return the member or null if there is no member with this name.
+	 * @throws IOException if the archive can not be read.
+	 */
+	public HuffMember getMember(String name) throws IOException {
+
+		HuffMember last = findMember(name);
+		if(last == null)
+			return null;
+		//the pieces are read from the last ones back, every group of
+		//pieces was written after the one before it
+		ArrayList<DataInputStream> groups = new ArrayList<DataInputStream>();
+		ArrayList<Integer> groupSizes = new ArrayList<Integer>();
+		long limit = file.length();
+		for(long previous = last.getPrevious(); previous != 0; ) {
+			if(previous < HEADER_SIZE || previous > limit - PIECES_HEADER_SIZE)
+				throw new IOException(MESSAGE_CORRUPTED + filename);
+			DataInputStream in = read(previous, PIECES_HEADER_SIZE);
+			limit = previous;
+			previous = in.readLong();
+			int count = in.readInt();
+			if(count < 0 || count > (file.length() - limit) / PIECE_SIZE)
+				throw new IOException(MESSAGE_CORRUPTED + filename);
+			groups.add(read(limit + PIECES_HEADER_SIZE, count * PIECE_SIZE));
+			groupSizes.add(count);
+		}
+
+		HuffMember member = new HuffMember(name);
+		for(int g = groups.size() - 1; g >= 0; g--) {
+			DataInputStream in = groups.get(g);
+			for(int i = 0; i < groupSizes.get(g); i++) {
+				member.addPiece(in.readLong(), in.readInt(), in.readInt());
+			}
+		}
+		for(int i = 0; i < last.getNumPieces(); i++) {
+			member.addPiece(last.getBlock(i), last.getStart(i), last.getLength(i));
+		}
+		if(member.getCovered() != last.getCovered())
+			throw new IOException(MESSAGE_CORRUPTED + filename);
+		return member;
+	}
+
+	/**
+	 * Returns the names of all members, sorted.
+	 * @return the names of all members.
+	 * @throws IOException if the archive can not be read.
+	 */
+	public Set<String> getMemberNames() throws IOException {
+
+		TreeMap<String, HuffMember> members = new TreeMap<String, HuffMember>(changed);
+		for(int d = 0; d < directories.size(); d++) {
+			readDirectory(d, members);
+		}
+		return members.keySet();
+	}
+
+	/**
+	 * Returns the number of bytes of a file that are already in the
+	 * archive (where the next append of the file starts).
+	 * @param name name of the member.
+	 * @return the number of bytes already in the archive.
+	 * @throws IOException if the archive can not be read.
+	 */
+	public long getCovered(String name) throws IOException {
+
+		HuffMember member = changed.get(name);
+		if(member == null)
+			member = findMember(name);
+		return member == null ? 0 : member.getCovered();
+	}
+
+	/**
+	 * Writes the last block and the directory if data was appended
+	 * and closes the file.
+	 * @throws IOException if the archive can not be written.
+	 */
+	public void close() throws IOException {
+
+		if(modified) {
+			if(pendingLength > 0)
+				appendBlock();
+			writeDirectory();
+		}
+		file.close();
+	}
+}
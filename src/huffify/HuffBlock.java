@@ -0,0 +1,127 @@
+package huffify;
+
+/**
+ * <h2>HuffBlock</h2>
+ * <p> This class holds the information about one block of a
+ * HuffArchive: where its encoded bits are in the archive, which
+ * code table and which coder were used to encode it, how many
+ * characters it holds
+ * and how many bits the encoded characters take (in every stream,
+ * if the block is split in more streams) and which characters are
+ * in the block (so a search can skip it). This information is
+ * written in the archive right before the encoded bits of the block.
+ * @author mehai
+ * @see huffify.HuffArchive
+ */
+public class HuffBlock {
+
+	//============================================
+	//INSTANCES
+	//============================================
+	private long offset;
+	private int size;
+	private long table;
+	private int coder;
+	private int length;
+	private int numBits;
+	private int[] streamBits;
+	private long[] symbols;
+
+	//============================================
+	//CONSTRUCTOR
+	//============================================
+
+	/**
+	 * Sets all the information about the block.
+	 * @param offset position of the encoded bits in the archive.
+	 * @param size number of bytes the encoded bits take in the archive.
+	 * @param table position of the code table in the archive.
+	 * @param coder the number of the EntropyCoder.
+	 * @param length number of characters in the block.
+	 * @param streamBits number of bits of the encoded characters
+	 * in every stream.
+	 * @param symbols the characters in the block, as a set of bits
+	 * (bit c is 1 if character c is in the block).
+	 */
+	public HuffBlock(long offset, int size, long table, int coder, int length,
+			int[] streamBits, long[] symbols) {
+		this.offset = offset;
+		this.size = size;
+		this.table = table;
+		this.coder = coder;
+		this.length = length;
+		this.streamBits = streamBits;
+		this.symbols = symbols;
+		for(int bits : streamBits) {
+			this.numBits += bits;
+		}
+	}
+
+	//============================================
+	//METHODS
+	//============================================
+
+	/**
+	 * Returns the position of the encoded bits in the archive.
+	 * @return the position of the encoded bits in the archive.
+	 */
+	public long getOffset() {
+		return this.offset;
+	}
+
+	/**
+	 * Returns the number of bytes the encoded bits take.
+	 * @return the number of bytes the encoded bits take.
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the position of the code table used by the block.
+	 * @return the position of the code table used by the block.
+	 */
+	public long getTable() {
+		return this.table;
+	}
+
+	/**
+	 * Returns the number of the coder used by the block.
+	 * @return the number of the EntropyCoder.
+	 */
+	public int getCoder() {
+		return this.coder;
+	}
+
+	/**
+	 * Returns the number of characters in the block.
+	 * @return the number of characters in the block.
+	 */
+	public int getLength() {
+		return this.length;
+	}
+
+	/**
+	 * Returns the number of bits of the encoded characters.
+	 * @return the number of bits of the encoded characters.
+	 */
+	public int getNumBits() {
+		return this.numBits;
+	}
+
+	/**
+	 * Returns the number of bits in every stream of the block.
+	 * @return the number of bits in every stream of the block.
+	 */
+	public int[] getStreamBits() {
+		return this.streamBits;
+	}
+
+	/**
+	 * Returns the characters in the block as a set of bits.
+	 * @return the characters in the block.
+	 */
+	public long[] getSymbols() {
+		return this.symbols;
+	}
+}
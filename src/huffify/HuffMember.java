@@ -0,0 +1,156 @@
+package huffify;
+
+import java.util.*;
+
+/**
+ * <h2>HuffMember</h2>
+ * <p> This class holds the information about one file packed in a
+ * HuffArchive: its name, how many of its bytes are already in the
+ * archive and its pieces, in order. A piece is a part of one block
+ * (where it starts in the decoded block and how many characters it
+ * has), so the small files packed together can share a block.
+ * The members are kept in the central directory of the archive,
+ * so a member can be found by its name without reading the others.
+ * <p> A member read only from the directory has just its last piece,
+ * the pieces before it are in the archive, at the position returned by
+ * <code>getPrevious()</code>.
+ * @author mehai
+ * @see huffify.HuffArchive
+ * @see huffify.HuffBlock
+ */
+public class HuffMember {
+
+	//============================================
+	//INSTANCES
+	//============================================
+	private String name;
+	private long covered;
+	private long previous;
+	private ArrayList<Long> blocks;
+	private ArrayList<Integer> starts;
+	private ArrayList<Integer> lengths;
+
+	//============================================
+	//CONSTRUCTOR
+	//============================================
+
+	/**
+	 * Creates a member with no pieces.
+	 * @param name name of the packed file.
+	 */
+	public HuffMember(String name) {
+		this(name, 0, 0);
+	}
+
+	/**
+	 * Creates a member whose first pieces are kept in the archive.
+	 * @param name name of the packed file.
+	 * @param covered number of bytes in the pieces kept in the archive.
+	 * @param previous position of the pieces in the archive (0 if
+	 * there are none).
+	 */
+	public HuffMember(String name, long covered, long previous) {
+		this.name = name;
+		this.covered = covered;
+		this.previous = previous;
+		this.blocks = new ArrayList<Long>();
+		this.starts = new ArrayList<Integer>();
+		this.lengths = new ArrayList<Integer>();
+	}
+
+	//============================================
+	//METHODS
+	//============================================
+
+	/**
+	 * Returns the name of the packed file.
+	 * @return the name of the packed file.
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Returns the number of bytes of the file already in the archive.
+	 * @return the number of bytes of the file already in the archive.
+	 */
+	public long getCovered() {
+		return this.covered;
+	}
+
+	/**
+	 * Returns the position in the archive of the pieces that come
+	 * before the pieces of this object.
+	 * @return the position of the previous pieces (0 if there are none).
+	 */
+	public long getPrevious() {
+		return this.previous;
+	}
+
+	/**
+	 * Returns the number of pieces of the member.
+	 * @return the number of pieces of the member.
+	 */
+	public int getNumPieces() {
+		return this.blocks.size();
+	}
+
+	/**
+	 * Returns the block of a piece.
+	 * @param piece index of the piece.
+	 * @return the position of the block in the archive.
+	 */
+	public long getBlock(int piece) {
+		return this.blocks.get(piece);
+	}
+
+	/**
+	 * Sets the block of a piece, once the block is written.
+	 * @param piece index of the piece.
+	 * @param block the position of the block in the archive.
+	 */
+	public void setBlock(int piece, long block) {
+		this.blocks.set(piece, block);
+	}
+
+	/**
+	 * Returns where a piece starts in its decoded block.
+	 * @param piece index of the piece.
+	 * @return the index of the first character of the piece.
+	 */
+	public int getStart(int piece) {
+		return this.starts.get(piece);
+	}
+
+	/**
+	 * Returns the number of characters of a piece.
+	 * @param piece index of the piece.
+	 * @return the number of characters of the piece.
+	 */
+	public int getLength(int piece) {
+		return this.lengths.get(piece);
+	}
+
+	/**
+	 * Adds a piece at the end of the member. If it follows the last
+	 * piece in the same block, the last piece gets longer instead.
+	 * @param block position of the block in the archive.
+	 * @param start index of the first character in the decoded block.
+	 * @param length number of characters in the piece.
+	 * @return true if a new piece was added.
+	 */
+	public boolean addPiece(long block, int start, int length) {
+
+		this.covered += length;
+		int last = this.blocks.size() - 1;
+		if(last >= 0 && this.blocks.get(last) == block
+				&& this.starts.get(last) + this.lengths.get(last) == start) {
+			this.lengths.set(last, this.lengths.get(last) + length);
+			return false;
+		}
+		this.blocks.add(block);
+		this.starts.add(start);
+		this.lengths.add(length);
+		return true;
+	}
+}
@@ -3,6 +3,7 @@ package huffify;
 import java.util.*;
 
 import java.io.*;
+import java.nio.file.*;
 
 /**
  *<h1>Huffify</h1>
@@ -13,7 +14,7 @@ import java.io.*;
  *that contains the compression and decompression methods
  *declared as static and all the auxiliary methods that these 2
  *principal methods use (also declared as static)
- *<p> Besides the methods declared in this class, there are other 3
+ *<p> Besides the methods declared in this class, there are other
  *classes that are used in this project, each with its own methods
  *and instances used to achieve the goal of this project:
  * <p> <b>huffify.FrequencyTable</b> -  used to generate the frequencies
@@ -22,11 +23,20 @@ import java.io.*;
  * about the Huffman Tree.
  * <p> <b>huffify.HuffNode</b> -  used to hold all the data about a certain
  * node in the Huffman Tree.
+ * <p> <b>huffify.HuffArchive</b> -  used to pack files in blocks and
+ * append new data to them, without compressing the old data again.
+ * <p> <b>huffify.HuffBlock</b> -  used to hold the data about a block of
+ * a HuffArchive.
+ * <p> <b>huffify.HuffMember</b> -  used to hold the data about a file
+ * packed in a HuffArchive.
+ * <p> <b>huffify.EntropyCoder</b> -  used to encode the blocks of a
+ * HuffArchive (with Huffman codes or with tANS).
  * @author mehai
  * @version 1.0
  * @see huffify.FrequencyTable 
  * @see huffify.HuffmanTree 
  * @see huffify.HuffNode
+ * @see huffify.HuffArchive
  */
 public class Huffify{
 	
@@ -36,14 +46,45 @@ public class Huffify{
 	static final String HELP_MESSAGE = "----------HUFFIFY---------\n"+
 									   "Huffify <filename> - compresses the file\n"+
 									   "Huffify -d <binaryfile> - decompresses the"+
-									   " .huff file";
+									   " .huff file\n"+
+									   "Huffify -s <rate> <filename> - compresses the file"+
+									   " with codes made from a sample (rate between 0 and 1)"+
+									   " of the file\n"+
+									   "Huffify -a <filename> - appends the new data of"+
+									   " the file to [filename].hfa\n"+
+									   "Huffify -x <filename> - extracts [filename].hfa\n"+
+									   "Huffify -p <archive> <files> - packs the files"+
+									   " (or their new data) in the archive\n"+
+									   "Huffify -e <archive> [members] - extracts the"+
+									   " members (all if none given) of the archive\n"+
+									   "Huffify -f <text> <archive> [members] - prints"+
+									   " where the text is in the members\n"+
+									   "Huffify -f <text> <filename> - prints where the text"+
+									   " is in the file compressed in [filename].huff\n"+
+									   "Options (right after the command) for -a and -p:\n"+
+									   "  -i - splits every new block in 4 interleaved"+
+									   " streams (faster decoding)\n"+
+									   "  -t - encodes the new blocks with tANS instead"+
+									   " of Huffman codes (better compression)";
 	static final String ILLEGAL_ARGUMENTS = "Invalid arguments! Please use"+
 											" Huffify -help command for more details";
 	static final String FILE_NOT_FOUND = "File not found! Please be sure to give the "+
 											"full path of the file...";
 	static final String MESSAGE_COMPRESSED = "File compressed succesfully: ";
+	static final String MESSAGE_SAMPLED = "Sampled table: ";
+	static final String MESSAGE_TOO_LONG = "The encoded text does not fit in a"+
+											" .huff file (more than " + Integer.MAX_VALUE + " bits)";
 	static final String SER_FILE_MESSAGE = "Could not find .ser file";
 	static final String HUFF_FILE_MESSAGE = "Could not find .huff file";
+	static final String HFA_FILE_MESSAGE = "Could not find .hfa file";
+	static final String MESSAGE_APPENDED = "Data appended succesfully: ";
+	static final String MESSAGE_EXTRACTED = "File extracted succesfully: ";
+	static final String MESSAGE_FOUND = "Matches found: ";
+	static final String MEMBER_MESSAGE = "Could not find in the archive: ";
+	static final String OPTION_INTERLEAVE = "-i";
+	static final String OPTION_TANS = "-t";
+	static final String MESSAGE_TRUNCATED = "File is shorter than the data"+
+											" already in the archive";
 
 	static final Comparator<HuffNode> HUFF_COMP = new Comparator<HuffNode>(){
 
@@ -70,6 +111,9 @@ public class Huffify{
 	 * Creates a PriorityQueue based on a FrequencyTable previously
 	 * created. This PriorityQueue is used to further build the Huffman
 	 * Tree.
+	 * <p> The nodes are added in sorted order and not in the order of the
+	 * HashSet (which changes from one run to another), so the same set
+	 * always gives the same HuffmanTree at compression and decompression.
 	 * @param fq the FrequencyTable that contains the set used to 
 	 * create the PriorityQueue.
 	 * @return the PriorityQueue of nodes used to build the Huffman Tree.
@@ -77,7 +121,9 @@ public class Huffify{
 	public static PriorityQueue<HuffNode> createPQ(FrequencyTable fq){
 		
 		PriorityQueue<HuffNode> pQueue = new PriorityQueue<HuffNode>(HUFF_COMP);
-		pQueue.addAll(fq.set);
+		ArrayList<HuffNode> nodes = new ArrayList<HuffNode>(fq.set);
+		Collections.sort(nodes, HUFF_COMP);
+		pQueue.addAll(nodes);
 		return pQueue;
 	}
 
@@ -107,13 +153,30 @@ public class Huffify{
 	 * @param map the HashMap that contains the characters and their codes.
 	 * @param fq the FrequencyTable that contains the set of nodes (char - frequency).
 	 * @return an integer representing the number of bits needed for the entire text.
+	 * @throws IllegalArgumentException if the text needs more bits than
+	 * a BitSet can hold.
 	 */
 	public static int numOfBits(HashMap<Character, String> map, FrequencyTable fq) {
 		
-		int total = 0;
+		long total = countBits(map, fq);
+		if(total > Integer.MAX_VALUE)
+			throw new IllegalArgumentException(MESSAGE_TOO_LONG);
+		return (int) total;
+	}
+
+	/**
+	 * Same as <code>numOfBits</code>, but the total is a long and it is
+	 * not checked against the size of a BitSet.
+	 * @param map the HashMap that contains the characters and their codes.
+	 * @param fq the FrequencyTable that contains the set of nodes (char - frequency).
+	 * @return the number of bits needed for the entire text.
+	 */
+	static long countBits(HashMap<Character, String> map, FrequencyTable fq) {
+
+		long total = 0;
 		for(HuffNode node : fq.set) {
 			//total += numBitsPerCharacter * thatCharacterFrequency
-			total += map.get(node.getCharacter()).length() * node.getFrequency();
+			total += (long) map.get(node.getCharacter()).length() * node.getFrequency();
 		}
 		return total;
 	}
@@ -129,6 +192,26 @@ public class Huffify{
 	 * @return a BitSet that contains the encoded compressed text.
 	 */
 	public static BitSet encode(String filename, HashMap<Character, String> map, int numBits){
+		return encode(filename, map, numBits, null);
+	}
+
+	/**
+	 * Same as <code>encode(filename, map, numBits)</code>, but also
+	 * counts the exact frequency of every character while reading the
+	 * text (the same way <code>FrequencyTable.createTable</code> does).
+	 * Used when the codes come from a sampled FrequencyTable, so the
+	 * text is read only once.
+	 * @param filename name of the text file to be compressed.
+	 * @param map the HashMap that contains the characters and their codes.
+	 * @param numBits estimated number of bits needed for the text.
+	 * @param counts array of FrequencyTable.NUM_ASCII frequencies to be
+	 * increased (or null if they are not needed).
+	 * @return a BitSet that contains the encoded compressed text.
+	 * @throws IllegalArgumentException if the text needs more bits than
+	 * a BitSet can hold.
+	 */
+	public static BitSet encode(String filename, HashMap<Character, String> map,
+			int numBits, int[] counts){
 		
 		BitSet encoded = new BitSet(numBits);
 		File file = new File(filename);
@@ -142,7 +225,11 @@ public class Huffify{
 				//analyze all the characters in the line
 				for(char c : tmp.toCharArray()) {
 					
+					if(counts != null)
+						counts[c]++;
 					String code = map.get(c);
+					if(k > Integer.MAX_VALUE - code.length())
+						throw new IllegalArgumentException(MESSAGE_TOO_LONG);
 					//transliterate the codes into a long BitSet
 					for(int i = 0; i < code.length(); i++) {
 						if(code.charAt(i) == '1') {
@@ -152,9 +239,13 @@ public class Huffify{
 					}
 				}
 				//taking into consideration the line separator (/n) that the scanner ignores
+				if(counts != null)
+					counts[FrequencyTable.LINE_SEPARATOR]++;
 				if(map.containsKey((char) FrequencyTable.LINE_SEPARATOR)) {
 					//10 == FrequencyTable.LINE_SEPARATOR
 					String code = map.get((char)10);
+					if(k > Integer.MAX_VALUE - code.length())
+						throw new IllegalArgumentException(MESSAGE_TOO_LONG);
 					//transliterate the code into the long BitSet
 					for(int i = 0; i < code.length(); i++) {
 						if(code.charAt(i) == '1') {
@@ -172,6 +263,51 @@ public class Huffify{
 		return encoded;
 	}
 
+	/**
+	 * Creates a BitSet representing the encoded characters of a part
+	 * of an array (used for the blocks of a HuffArchive). Works the
+	 * same as the method that encodes a whole file, but the line
+	 * separators are encoded as any other character.
+	 * <p> The characters are split round-robin in streamBits.length
+	 * streams (character j goes in stream j % streams) and the streams
+	 * are written one after the other. The number of bits of every
+	 * stream is put in streamBits.
+	 * @param data the bytes of the text.
+	 * @param off index of the first byte to encode.
+	 * @param len number of bytes to encode.
+	 * @param map the HashMap that contains the characters and their codes.
+	 * @param streamBits array with one element for every stream, used
+	 * to return the number of bits in every stream.
+	 * @return a BitSet that contains the encoded bytes.
+	 */
+	public static BitSet encode(byte[] data, int off, int len,
+			HashMap<Character, String> map, int[] streamBits){
+
+		int streams = streamBits.length;
+		Arrays.fill(streamBits, 0);
+		for(int j = 0; j < len; j++) {
+			streamBits[j % streams] += map.get((char) data[off + j]).length();
+		}
+		//k[s] = bitIndex in stream s
+		int[] k = new int[streams];
+		for(int s = 1; s < streams; s++) {
+			k[s] = k[s - 1] + streamBits[s - 1];
+		}
+		BitSet encoded = new BitSet(k[streams - 1] + streamBits[streams - 1]);
+		for(int j = 0; j < len; j++) {
+			String code = map.get((char) data[off + j]);
+			int s = j % streams;
+			//transliterate the code into the BitSet
+			for(int i = 0; i < code.length(); i++) {
+				if(code.charAt(i) == '1') {
+					encoded.set(k[s]);
+				}
+				k[s]++;
+			}
+		}
+		return encoded;
+	}
+
 	/**
 	 * Creates the .huff file.
 	 * The [file].huff contains the BitSet that can be later used to
@@ -220,22 +356,77 @@ public class Huffify{
 		//create the FrequencyTable of characters in the text
 		FrequencyTable fq = new FrequencyTable(filename);
 		fq.createTable();
-		//put the resulted set in a file (you can create the
-		//huffman tree with it later)
-		fq.serializeSet(filename + ".ser");
 		//fq.printFrequencySet();
 		PriorityQueue<HuffNode> pq = createPQ(fq);
 		//pq = printPQ(pq);
 		HuffmanTree huffTree = new HuffmanTree(pq);
 		HashMap<Character, String> codes = huffTree.buildCodes();
 		
-		int numBits = numOfBits(codes, fq);
-		//here the fun begins with the compression
-		BitSet encodedText = encode(filename, codes, numBits);
-		//code is being written
-		writeCompressedFile(filename + ".huff", encodedText);
+		try {
+			//checked before any file is written
+			int numBits = numOfBits(codes, fq);
+			//put the resulted set in a file (you can create the
+			//huffman tree with it later)
+			fq.serializeSet(filename + ".ser");
+			//here the fun begins with the compression
+			BitSet encodedText = encode(filename, codes, numBits);
+			//code is being written
+			writeCompressedFile(filename + ".huff", encodedText);
+		} catch (IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+		}
 	}
 	
+	/**
+	 * Does the same steps as <code>compress</code>, but the FrequencyTable
+	 * is estimated from a sample of the file (see
+	 * <code>FrequencyTable.createSampledTable</code>), so the whole file
+	 * is read only once, by the encoding. The exact frequencies are
+	 * counted while encoding and used to print how many more bits the
+	 * sampled table needs than the exact one would.
+	 * <p> The .ser file also keeps the number of bits of the encoded text,
+	 * since it can not be calculated from the sampled frequencies. A text
+	 * that needs more than Integer.MAX_VALUE bits is not compressed.
+	 * @param filename name of the file to be compressed.
+	 * @param rate the part of the file used for the sample (between 0 and 1).
+	 * @see huffify.FrequencyTable
+	 */
+	public static void compressSampled(String filename, double rate){
+
+		FrequencyTable fq = new FrequencyTable(filename);
+		fq.createSampledTable(rate);
+		HuffmanTree huffTree = new HuffmanTree(createPQ(fq));
+		HashMap<Character, String> codes = huffTree.buildCodes();
+
+		int[] counts = new int[FrequencyTable.NUM_ASCII];
+		FrequencyTable exact;
+		int numBits;
+		//the sampled frequencies give only the first size of the BitSet,
+		//encode finds out if the real text fits
+		int capacity = (int) Math.min(Integer.MAX_VALUE, countBits(codes, fq));
+		try {
+			BitSet encodedText = encode(filename, codes, capacity, counts);
+			exact = new FrequencyTable(counts);
+			numBits = numOfBits(codes, exact);
+			fq.serializeSet(filename + ".ser", numBits);
+			writeCompressedFile(filename + ".huff", encodedText);
+		} catch (IllegalArgumentException e) {
+			//the number of bits is kept as an int, like the BitSet indexes
+			System.out.println(e.getMessage());
+			return;
+		}
+
+		//what the exact table would have needed
+		if(!exact.set.isEmpty()) {
+			HashMap<Character, String> exactCodes =
+					new HuffmanTree(createPQ(exact)).buildCodes();
+			int exactBits = numOfBits(exactCodes, exact);
+			double lost = exactBits == 0 ? 0 : 100.0 * (numBits - exactBits) / exactBits;
+			System.out.println(MESSAGE_SAMPLED + numBits + " bits, exact table: "
+					+ exactBits + " bits, lost: " + String.format("%.2f", lost) + "%");
+		}
+	}
+
 	/**
 	 * Reads the BitSet from the [filename].huff. This file
 	 * was created during compression.
@@ -277,35 +468,49 @@ public class Huffify{
 		FileOutputStream file;
 		try {
 			file = new FileOutputStream(huff.substring(0, huff.length() - 5) + ".dec");
-			
-			BitSet code = readBitSet(huff);
-			HuffNode p = huffTree.getRoot();
-			for(int i = 0; i < numBits; i++) {
-				//get one bit at a time
-				boolean value = code.get(i);
-				//if bit = 1 -> move right in the tree
-				if(value) {
-					HuffNode right = p.getRightChild();
-					p = right;
-				//if bit = 0 -> move left in the tree
-				}else {
-					HuffNode left = p.getLeftChild();
-					p = left;
-				}
-				//both null
-				if(p.getLeftChild() == p.getRightChild()) {
-					char tmp = p.getCharacter();
-					//write the character in ASCII using byte cast
-					file.write((byte) tmp);
-					p = huffTree.getRoot();
-				}
-			}
+			decodeBits(readBitSet(huff), huffTree, numBits, file);
 			file.close();
 		} catch (IOException i) {
 			i.printStackTrace();
 			return;
 	    }
 	}
+
+	/**
+	 * Decodes the bits of a .huff file by moving in the HuffmanTree
+	 * (see <code>writeDecompressedFile</code>) and writes the characters
+	 * in a stream.
+	 * @param code the BitSet read from the .huff file.
+	 * @param huffTree the HuffmanTree needed for decompression.
+	 * @param numBits total number of bits in the compressed encoded text.
+	 * @param file the stream the characters are written in.
+	 * @throws IOException if the stream can not be written.
+	 */
+	static void decodeBits(BitSet code, HuffmanTree huffTree, int numBits, OutputStream file)
+			throws IOException {
+
+		HuffNode p = huffTree.getRoot();
+		for(int i = 0; i < numBits; i++) {
+			//get one bit at a time
+			boolean value = code.get(i);
+			//if bit = 1 -> move right in the tree
+			if(value) {
+				HuffNode right = p.getRightChild();
+				p = right;
+			//if bit = 0 -> move left in the tree
+			}else {
+				HuffNode left = p.getLeftChild();
+				p = left;
+			}
+			//both null
+			if(p.getLeftChild() == p.getRightChild()) {
+				char tmp = p.getCharacter();
+				//write the character in ASCII using byte cast
+				file.write((byte) tmp);
+				p = huffTree.getRoot();
+			}
+		}
+	}
 	
 	/**
 	 * Does all the needed steps for decompression. The steps are:
@@ -343,26 +548,392 @@ public class Huffify{
 		HuffmanTree huffTree = new HuffmanTree(pq);
 		HashMap<Character, String> codes = huffTree.buildCodes();
 		
-		int numBits = numOfBits(codes, fq);
+		//a sampled table keeps the number of bits, the frequencies are not exact
+		int numBits = fq.getNumBits() >= 0 ? fq.getNumBits() : numOfBits(codes, fq);
 		//the file is written decompressing the .ser and .huff files
 		writeDecompressedFile(huffFile, huffTree, numBits);
 	}
 
+	/**
+	 * Appends the data added to a file since the last append to the
+	 * archive [filename].hfa (the archive is created the first time).
+	 * @param filename name of the file to be appended.
+	 * @param streams number of interleaved streams of the new blocks.
+	 * @param coder the number of the EntropyCoder of the new blocks.
+	 * @see #pack(String, String[], int, int)
+	 */
+	public static void append(String filename, int streams, int coder) {
+		pack(filename + ".hfa", new String[] {filename}, null, streams, coder);
+	}
+
+	/**
+	 * Decodes [filename].hfa and writes it in [filename].dec.
+	 * @param filename the <b>initial</b> name of the file.
+	 * @see #unpack(String, String[])
+	 */
+	public static void extract(String filename) {
+
+		try {
+			if(!new File(filename + ".hfa").exists())
+				throw new FileNotFoundException(HFA_FILE_MESSAGE);
+			HuffArchive archive = new HuffArchive(filename + ".hfa", false);
+			try {
+				HuffMember member = archive.getMember(HuffArchive.singleName(filename));
+				if(member == null) {
+					System.out.println(MEMBER_MESSAGE + filename);
+					return;
+				}
+				writeMember(archive, member, new File(filename + ".dec"));
+				System.out.println(MESSAGE_EXTRACTED + filename + ".dec");
+			} finally {
+				archive.close();
+			}
+		} catch (IOException e) {
+			System.out.println(e);
+		}
+	}
+
+	/**
+	 * Packs many files in one archive (created the first time). Every
+	 * file is a member of the archive, found by its name in the central
+	 * directory. For a file that is already a member, only the data added
+	 * since the last time is read and encoded, in blocks of
+	 * HuffArchive.BLOCK_SIZE characters, so a file that keeps growing
+	 * (like a log) does not have to be compressed again every time.
+	 * Small files are encoded together, in the same block.
+	 * The files must be in the current directory (or below it), a member
+	 * is named by the path of its file from there.
+	 * @param archiveFile name of the archive.
+	 * @param filenames names of the files to be packed.
+	 * @param streams number of interleaved streams of the new blocks.
+	 * @param coder the number of the EntropyCoder of the new blocks.
+	 * @see huffify.HuffArchive
+	 * @see huffify.EntropyCoder
+	 */
+	public static void pack(String archiveFile, String[] filenames, int streams, int coder) {
+
+		//the names are checked before the archive is changed
+		String[] names = new String[filenames.length];
+		try {
+			for(int i = 0; i < filenames.length; i++) {
+				names[i] = HuffArchive.memberName(filenames[i]);
+			}
+		} catch (IllegalArgumentException e) {
+			System.out.println(e);
+			return;
+		}
+		pack(archiveFile, filenames, names, streams, coder);
+	}
+
+	/**
+	 * Packs the files in the archive under the given member names.
+	 * @param archiveFile name of the archive.
+	 * @param filenames names of the files to be packed.
+	 * @param names names of the members, or null for the archive of
+	 * one file, which is named after it.
+	 * @param streams number of interleaved streams of the new blocks.
+	 * @param coder the number of the EntropyCoder of the new blocks.
+	 */
+	private static void pack(String archiveFile, String[] filenames, String[] names,
+			int streams, int coder) {
+
+		try {
+			HuffArchive archive = new HuffArchive(archiveFile, true);
+			archive.setStreams(streams);
+			archive.setCoder(coder);
+			byte[] data = new byte[HuffArchive.BLOCK_SIZE];
+			try {
+				for(int i = 0; i < filenames.length; i++) {
+					String filename = filenames[i];
+					String name = names == null ?
+							HuffArchive.singleName(filename) : names[i];
+					RandomAccessFile file = new RandomAccessFile(filename, "r");
+					try {
+						long covered = archive.getCovered(name);
+						long remaining = file.length() - covered;
+						if(remaining < 0)
+							throw new IOException(MESSAGE_TRUNCATED + ": " + filename);
+						//skip the data that is already in the archive
+						file.seek(covered);
+						//an empty file is still added to the directory
+						do {
+							int len = (int) Math.min(data.length, remaining);
+							file.readFully(data, 0, len);
+							archive.append(name, data, 0, len);
+							remaining -= len;
+						} while(remaining > 0);
+					} finally {
+						file.close();
+					}
+				}
+			} finally {
+				archive.close();
+			}
+			System.out.println(MESSAGE_APPENDED + archiveFile);
+		} catch (IOException | IllegalArgumentException e) {
+			System.out.println(e);
+		}
+	}
+
+	/**
+	 * Decodes members of an archive. Every member is written in
+	 * [member].dec, in the current directory (or below it, a member
+	 * that would be written anywhere else is skipped). Only the blocks
+	 * of the given members are read.
+	 * @param archiveFile name of the archive.
+	 * @param members names of the members to be extracted, all the
+	 * members are extracted if there is none.
+	 */
+	public static void unpack(String archiveFile, String[] members) {
+
+		try {
+			if(!new File(archiveFile).exists())
+				throw new FileNotFoundException(HFA_FILE_MESSAGE);
+			HuffArchive archive = new HuffArchive(archiveFile, false);
+			Path directory = Paths.get("").toAbsolutePath();
+			try {
+				if(members.length == 0)
+					members = archive.getMemberNames().toArray(new String[0]);
+				for(String name : members) {
+					HuffMember member = archive.getMember(name);
+					if(member == null) {
+						System.out.println(MEMBER_MESSAGE + name);
+						continue;
+					}
+					Path output = directory.resolve(name + ".dec").normalize();
+					if(!output.startsWith(directory)) {
+						System.out.println(HuffArchive.MESSAGE_NAME + name);
+						continue;
+					}
+					Files.createDirectories(output.getParent());
+					writeMember(archive, member, output.toFile());
+					System.out.println(MESSAGE_EXTRACTED + name + ".dec");
+				}
+			} finally {
+				archive.close();
+			}
+		} catch (IOException e) {
+			System.out.println(e);
+		}
+	}
+
+	/**
+	 * Decodes the pieces of one member and writes them in a file.
+	 * @param archive the archive of the member.
+	 * @param member the member to be decoded.
+	 * @param output the file the text is written in.
+	 * @throws IOException if the archive or the file can not be used.
+	 */
+	private static void writeMember(HuffArchive archive, HuffMember member, File output)
+			throws IOException {
+
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(output));
+		try {
+			for(int i = 0; i < member.getNumPieces(); i++) {
+				out.write(archive.decodeBlock(member.getBlock(i)), member.getStart(i),
+						member.getLength(i));
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Searches a text in a file compressed by <code>compress</code>
+	 * (or <code>compressSampled</code>) and prints every position where
+	 * it is found, as [filename]:[position]. The .huff file is decoded
+	 * in memory, the [filename].dec file is not written.
+	 * @param filename the <b>initial</b> name of the file.
+	 * @param pattern the text to be found.
+	 */
+	public static void searchCompressed(String filename, final String pattern) {
+
+		String serFile = filename + ".ser";
+		String huffFile = filename + ".huff";
+		if(!new File(serFile).exists()) {
+			System.out.println(new FileNotFoundException(SER_FILE_MESSAGE));
+			return;
+		}
+		FrequencyTable fq = new FrequencyTable();
+		fq.deserializeSet(serFile);
+		HuffmanTree huffTree = new HuffmanTree(createPQ(fq));
+		HashMap<Character, String> codes = huffTree.buildCodes();
+		int numBits = fq.getNumBits() >= 0 ? fq.getNumBits() : numOfBits(codes, fq);
+
+		final byte[] text = pattern.getBytes();
+		final ArrayList<Long> found = new ArrayList<Long>();
+		//compares the last text.length characters with the text
+		OutputStream matcher = new OutputStream() {
+			private byte[] last = new byte[text.length];
+			private long position;
+
+			@Override
+			public void write(int b) {
+				last[(int) (position % text.length)] = (byte) b;
+				position++;
+				if(position < text.length)
+					return;
+				int start = (int) (position % text.length);
+				for(int k = 0; k < text.length; k++) {
+					if(last[(start + k) % text.length] != text[k])
+						return;
+				}
+				found.add(position - text.length);
+			}
+		};
+		try {
+			decodeBits(readBitSet(huffFile), huffTree, numBits, matcher);
+		} catch (IOException e) {
+			System.out.println(e);
+			return;
+		}
+		for(long position : found) {
+			System.out.println(filename + ":" + position);
+		}
+		System.out.println(MESSAGE_FOUND + found.size());
+	}
+
+	/**
+	 * Searches a text in members of an archive and prints every
+	 * position where it is found, as [member]:[position]. Nothing is
+	 * written on disk and only the blocks that can contain the text
+	 * are decoded (see <code>HuffArchive.search</code>).
+	 * @param archiveFile name of the archive.
+	 * @param pattern the text to be found.
+	 * @param members names of the members to search in, all the
+	 * members are searched if there is none.
+	 */
+	public static void search(String archiveFile, String pattern, String[] members) {
+
+		try {
+			if(!new File(archiveFile).exists())
+				throw new FileNotFoundException(HFA_FILE_MESSAGE);
+			HuffArchive archive = new HuffArchive(archiveFile, false);
+			int total = 0;
+			try {
+				if(members.length == 0)
+					members = archive.getMemberNames().toArray(new String[0]);
+				byte[] text = pattern.getBytes();
+				for(String name : members) {
+					HuffMember member = archive.getMember(name);
+					if(member == null) {
+						System.out.println(MEMBER_MESSAGE + name);
+						continue;
+					}
+					for(long position : archive.search(member, text)) {
+						System.out.println(name + ":" + position);
+						total++;
+					}
+				}
+			} finally {
+				archive.close();
+			}
+			System.out.println(MESSAGE_FOUND + total);
+		} catch (IOException e) {
+			System.out.println(e);
+		}
+	}
+
 	//============================================
 	//MAIN METHOD
 	//============================================
 	
+	/**
+	 * Reads the options given right after the command in args[0]. Only
+	 * the options of that command are read (-i and -t for -a and -p),
+	 * every option at most once, and the arguments
+	 * the command needs are never taken as options, so a file can have
+	 * the name of an option. Anywhere else an option is a normal argument.
+	 * @param args the arguments in the command line.
+	 * @return the options, in the order they were given.
+	 */
+	static List<String> readOptions(String[] args) {
+
+		List<String> accepted;
+		int required;
+		if(args[0].equals("-a") || args[0].equals("-p")) {
+			accepted = Arrays.asList(OPTION_INTERLEAVE, OPTION_TANS);
+			required = args[0].equals("-a") ? 1 : 2;
+		}else {
+			return new ArrayList<String>();
+		}
+		List<String> options = new ArrayList<String>();
+		int i = 1;
+		while(i < args.length - required && accepted.contains(args[i])
+				&& !options.contains(args[i])) {
+			options.add(args[i++]);
+		}
+		return options;
+	}
+
 	/**
 	 * The main method takes the arguments in the command line
 	 * and verifies if the flags are valid, if the filename given
-	 * is valid and executes compression, decompression or prints
+	 * is valid and executes compression (exact or sampled), decompression, append,
+	 * extraction, packing, unpacking, search or prints
 	 * the HELP_MESSAGE considering the necessities of the user.
 	 * @param args used to identify flags and filename.
 	 */
 	public static void main (String []args)
 	{
 		try{
-			if(args.length == 0 || args.length > 2)
+			if(args.length == 0)
+				throw new IllegalArgumentException();
+			//options are read only right after the commands that accept them
+			List<String> options = readOptions(args);
+			int streams = options.contains(OPTION_INTERLEAVE) ?
+					HuffArchive.INTERLEAVED_STREAMS : 1;
+			int coder = options.contains(OPTION_TANS) ?
+					EntropyCoder.TANS : EntropyCoder.HUFFMAN;
+			//the command and the arguments after the options
+			String[] rest = new String[args.length - options.size()];
+			rest[0] = args[0];
+			System.arraycopy(args, 1 + options.size(), rest, 1, rest.length - 1);
+			args = rest;
+			/*checking for archives of many files*/
+			if(args[0].equals("-p")){
+				if(args.length < 3)
+					throw new IllegalArgumentException();
+				String[] filenames = Arrays.copyOfRange(args, 2, args.length);
+				for(String filename : filenames) {
+					if(!new File(filename).exists())
+						throw new FileNotFoundException();
+				}
+				//pack the files (or their new data) in the archive
+				pack(args[1], filenames, streams, coder);
+				return;
+			}
+			if(args[0].equals("-e")){
+				if(args.length < 2)
+					throw new IllegalArgumentException();
+				//extract the given members (or all of them)
+				unpack(args[1], Arrays.copyOfRange(args, 2, args.length));
+				return;
+			}
+			if(args[0].equals("-f")){
+				if(args.length < 3 || args[1].isEmpty())
+					throw new IllegalArgumentException();
+				//search without writing the decompressed members
+				if(args.length == 3 && new File(args[2] + ".huff").exists())
+					searchCompressed(args[2], args[1]);
+				else
+					search(args[2], args[1], Arrays.copyOfRange(args, 3, args.length));
+				return;
+			}
+			if(args[0].equals("-s")){
+				if(args.length != 3)
+					throw new IllegalArgumentException();
+				//NumberFormatException is an IllegalArgumentException
+				double rate = Double.parseDouble(args[1]);
+				if(!(rate > 0 && rate <= 1))
+					throw new IllegalArgumentException();
+				if(!new File(args[2]).exists())
+					throw new FileNotFoundException();
+				//start compression with a sampled table
+				compressSampled(args[2], rate);
+				return;
+			}
+			if(args.length > 2)
 				throw new IllegalArgumentException();
 			/*checking for compression / help*/
 			if(args.length == 1){
@@ -380,13 +951,25 @@ public class Huffify{
 
 				}
 			}
-			/*checking for decompression*/
+			/*checking for decompression / archive*/
 			else{
 				if(args[0].equals("-d")){
 					String filename = args[1];
 					//start decompression
 					decompress(filename);
 				}
+				else if(args[0].equals("-a")){
+					String filename = args[1];
+					if(!new File(filename).exists())
+						throw new FileNotFoundException();
+					//append the new data to the archive
+					append(filename, streams, coder);
+				}
+				else if(args[0].equals("-x")){
+					String filename = args[1];
+					//extract the whole archive
+					extract(filename);
+				}
 				else
 					throw new IllegalArgumentException();
 			}
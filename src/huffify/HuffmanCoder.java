@@ -0,0 +1,67 @@
+package huffify;
+
+import java.util.*;
+
+/**
+ * <h2>HuffmanCoder</h2>
+ * <p> This class encodes the blocks of a HuffArchive with the codes
+ * of a HuffmanTree and decodes them with a TableDecoder.
+ * @author mehai
+ * @see huffify.EntropyCoder
+ * @see huffify.HuffmanTree
+ * @see huffify.TableDecoder
+ */
+public class HuffmanCoder implements EntropyCoder {
+
+	//============================================
+	//INSTANCES
+	//============================================
+	private HuffmanTree huffTree;
+	private HashMap<Character, String> codes;
+	private TableDecoder decoder;
+
+	//============================================
+	//CONSTRUCTOR
+	//============================================
+
+	/**
+	 * Builds the HuffmanTree and the codes of the table.
+	 * @param fq the FrequencyTable that contains the set of nodes.
+	 */
+	public HuffmanCoder(FrequencyTable fq) {
+
+		this.huffTree = new HuffmanTree(Huffify.createPQ(fq));
+		this.codes = huffTree.buildCodes();
+	}
+
+	//============================================
+	//METHODS
+	//============================================
+
+	/**
+	 * Same as <code>Huffify.numOfBits</code> but checks that every
+	 * character has a code first.
+	 */
+	@Override
+	public int numOfBits(FrequencyTable fq) {
+
+		for(HuffNode node : fq.set) {
+			if(!codes.containsKey(node.getCharacter()))
+				return -1;
+		}
+		return Huffify.numOfBits(codes, fq);
+	}
+
+	@Override
+	public BitSet encode(byte[] data, int off, int len, int[] streamBits) {
+		return Huffify.encode(data, off, len, codes, streamBits);
+	}
+
+	@Override
+	public BlockDecoder getDecoder() {
+
+		if(decoder == null)
+			decoder = new TableDecoder(huffTree);
+		return decoder;
+	}
+}
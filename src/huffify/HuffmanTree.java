@@ -100,6 +100,11 @@ public class HuffmanTree {
 		HuffNode right = root.getRightChild();
 		//only when they are null
 		if(left == right) {
+			//a tree made of a single leaf still needs a one bit code
+			if(code.length() == 0) {
+				map.put(root.getCharacter(), "0");
+				return;
+			}
 			map.put(root.getCharacter(), code.toString());
 			code.deleteCharAt(code.length() - 1);
 			return;
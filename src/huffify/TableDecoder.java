@@ -0,0 +1,149 @@
+package huffify;
+
+/**
+ * <h2>TableDecoder</h2>
+ * <p> This class decodes the blocks of a HuffArchive using lookup
+ * tables instead of moving in the HuffmanTree one bit at a time.
+ * The next PEEK_BITS bits of the code are used as an index in the
+ * tables, which tell the decoded character and the length of its
+ * code. Codes longer than PEEK_BITS bits are rare, for them the
+ * table tells the node reached after PEEK_BITS bits and the rest of
+ * the code is decoded by moving in the tree.
+ * <p> A block can be split in more streams (the characters are
+ * given to the streams round-robin). The decoder keeps a bit position
+ * for every stream and moves all of them in the same loop, so the
+ * decoding of a character does not have to wait for the length
+ * of the previous character's code.
+ * @author mehai
+ * @see huffify.HuffmanTree
+ * @see huffify.HuffArchive
+ * @see huffify.BlockDecoder
+ */
+public class TableDecoder implements BlockDecoder {
+
+	//============================================
+	//CONSTANTS
+	//============================================
+	static final int PEEK_BITS = 10;
+	static final int PEEK_MASK = (1 << PEEK_BITS) - 1;
+
+	//============================================
+	//INSTANCES
+	//============================================
+	private byte[] symbol;
+	private byte[] length;
+	private HuffNode[] node;
+
+	//============================================
+	//CONSTRUCTOR
+	//============================================
+
+	/**
+	 * Builds the tables by moving in the tree with every possible
+	 * combination of PEEK_BITS bits.
+	 * @param huffTree the HuffmanTree used to encode the characters.
+	 */
+	public TableDecoder(HuffmanTree huffTree) {
+
+		int size = 1 << PEEK_BITS;
+		symbol = new byte[size];
+		length = new byte[size];
+		node = new HuffNode[size];
+		HuffNode root = huffTree.getRoot();
+		for(int v = 0; v < size; v++) {
+			HuffNode p = root;
+			int b = 0;
+			//the first bit of the code is the lowest bit of v
+			while(p.getLeftChild() != p.getRightChild() && b < PEEK_BITS) {
+				p = ((v >>> b) & 1) == 1 ? p.getRightChild() : p.getLeftChild();
+				b++;
+			}
+			if(p.getLeftChild() == p.getRightChild()) {
+				symbol[v] = (byte) p.getCharacter();
+				//a single character has the code "0"
+				length[v] = (byte) Math.max(b, 1);
+			}else {
+				//code longer than PEEK_BITS, continue from this node
+				node[v] = p;
+			}
+		}
+	}
+
+	//============================================
+	//METHODS
+	//============================================
+
+	/**
+	 * Returns PEEK_BITS bits starting at position pos.
+	 * The array must have one more word after the last bit.
+	 * @param words the encoded bits (same order as in a BitSet).
+	 * @param pos position of the first bit.
+	 * @return the bits, the first one being the lowest.
+	 */
+	static int peek(long[] words, long pos) {
+
+		int i = (int) (pos >>> 6);
+		int shift = (int) (pos & 63);
+		long bits = words[i] >>> shift;
+		if(shift > 64 - PEEK_BITS)
+			bits |= words[i + 1] << (64 - shift);
+		return (int) bits & PEEK_MASK;
+	}
+
+	/**
+	 * Decodes the character at position pos and returns the position
+	 * after its code. The character is written in out[j].
+	 * @param words the encoded bits.
+	 * @param pos position of the code of the character.
+	 * @param out array of decoded characters.
+	 * @param j index of the character in out.
+	 * @return the position of the next code.
+	 */
+	private long next(long[] words, long pos, byte[] out, int j) {
+
+		int v = peek(words, pos);
+		if(length[v] != 0) {
+			out[j] = symbol[v];
+			return pos + length[v];
+		}
+		//long code: move in the tree one bit at a time
+		HuffNode p = node[v];
+		pos += PEEK_BITS;
+		while(p.getLeftChild() != p.getRightChild()) {
+			p = ((words[(int) (pos >>> 6)] >>> pos) & 1) == 1 ?
+					p.getRightChild() : p.getLeftChild();
+			pos++;
+		}
+		out[j] = (byte) p.getCharacter();
+		return pos;
+	}
+
+	@Override
+	public byte[] decode(long[] words, int[] streamBits, int count) {
+
+		byte[] out = new byte[count];
+		int streams = streamBits.length;
+		long[] pos = new long[streams];
+		for(int s = 1; s < streams; s++) {
+			pos[s] = pos[s - 1] + streamBits[s - 1];
+		}
+		int j = 0;
+		if(streams == 4) {
+			//the 4 positions are independent, so their loads can overlap
+			long p0 = pos[0], p1 = pos[1], p2 = pos[2], p3 = pos[3];
+			for(; j + 4 <= count; j += 4) {
+				p0 = next(words, p0, out, j);
+				p1 = next(words, p1, out, j + 1);
+				p2 = next(words, p2, out, j + 2);
+				p3 = next(words, p3, out, j + 3);
+			}
+			pos[0] = p0; pos[1] = p1; pos[2] = p2; pos[3] = p3;
+		}
+		//any number of streams and the last characters
+		for(; j < count; j++) {
+			int s = j % streams;
+			pos[s] = next(words, pos[s], out, j);
+		}
+		return out;
+	}
+}
@@ -0,0 +1,268 @@
+package huffify;
+
+import java.util.*;
+
+/**
+ * <h2>TansCoder</h2>
+ * <p> This class encodes the blocks of a HuffArchive with tANS (table
+ * based asymmetric numeral systems, also known as FSE). A Huffman code
+ * uses a whole number of bits for every character, tANS can use a
+ * fraction of a bit, so frequent characters (like the spaces in a log)
+ * cost less. Decoding is done with tables, like the TableDecoder.
+ * <p> The frequencies of the FrequencyTable are scaled so their sum is
+ * TABLE_SIZE and the characters are spread in a table of TABLE_SIZE
+ * states. The coder keeps one state: encoding a character writes the
+ * low bits of the state and moves to a state of that character.
+ * Decoding reads the state, gives the character of the state and reads
+ * back the bits to find the previous state. Since the decoder undoes
+ * the encoder, the characters are encoded from the last one to the
+ * first one and the decoder reads the bits from the end of the stream.
+ * <p> Every stream has its own state, written with TABLE_LOG bits at
+ * the end of the stream.
+ * @author mehai
+ * @see huffify.EntropyCoder
+ * @see huffify.FrequencyTable
+ */
+public class TansCoder implements EntropyCoder, BlockDecoder {
+
+	//============================================
+	//CONSTANTS
+	//============================================
+	static final int TABLE_LOG = 11;
+	static final int TABLE_SIZE = 1 << TABLE_LOG;
+	static final int NUM_ASCII = FrequencyTable.NUM_ASCII;
+
+	//============================================
+	//INSTANCES
+	//============================================
+	private int[] norm;
+	//decoding: for every state
+	private byte[] symbol;
+	private byte[] numBits;
+	private int[] newState;
+	//encoding: the states of every character start at first[c]
+	private int[] first;
+	private int[] states;
+
+	//============================================
+	//CONSTRUCTOR
+	//============================================
+
+	/**
+	 * Scales the frequencies and builds the tables of the states.
+	 * @param fq the FrequencyTable that contains the set of nodes.
+	 */
+	public TansCoder(FrequencyTable fq) {
+
+		norm = normalize(fq.set);
+
+		//spread the characters in the states, far from each other
+		byte[] spread = new byte[TABLE_SIZE];
+		int step = (TABLE_SIZE >>> 1) + (TABLE_SIZE >>> 3) + 3;
+		int position = 0;
+		for(int c = 0; c < NUM_ASCII; c++) {
+			for(int k = 0; k < norm[c]; k++) {
+				spread[position] = (byte) c;
+				position = (position + step) & (TABLE_SIZE - 1);
+			}
+		}
+
+		first = new int[NUM_ASCII];
+		for(int c = 1; c < NUM_ASCII; c++) {
+			first[c] = first[c - 1] + norm[c - 1];
+		}
+		symbol = new byte[TABLE_SIZE];
+		numBits = new byte[TABLE_SIZE];
+		newState = new int[TABLE_SIZE];
+		states = new int[TABLE_SIZE];
+		int[] next = norm.clone();
+		for(int x = 0; x < TABLE_SIZE; x++) {
+			int c = spread[x];
+			//the k-th state of c has the value norm[c] + k
+			int value = next[c]++;
+			int bits = TABLE_LOG - log2(value);
+			symbol[x] = (byte) c;
+			numBits[x] = (byte) bits;
+			newState[x] = (value << bits) - TABLE_SIZE;
+			states[first[c] + value - norm[c]] = x;
+		}
+	}
+
+	//============================================
+	//METHODS
+	//============================================
+
+	/**
+	 * Scales the frequencies so their sum is TABLE_SIZE. Every character
+	 * in the set gets at least 1. The rounding errors are fixed by giving
+	 * (or taking) one at a time to the character where it changes the
+	 * size of the text the most (or the least).
+	 * @param set the set of nodes (character + frequency).
+	 * @return the scaled frequency of every ASCII character.
+	 */
+	static int[] normalize(Set<HuffNode> set) {
+
+		int[] norm = new int[NUM_ASCII];
+		long[] freq = new long[NUM_ASCII];
+		long total = 0;
+		for(HuffNode node : set) {
+			freq[node.getCharacter()] = node.getFrequency();
+			total += node.getFrequency();
+		}
+		int sum = 0;
+		for(int c = 0; c < NUM_ASCII; c++) {
+			if(freq[c] > 0) {
+				norm[c] = (int) Math.max(1, freq[c] * TABLE_SIZE / total);
+				sum += norm[c];
+			}
+		}
+		while(sum != TABLE_SIZE) {
+			int best = -1;
+			double bestGain = 0;
+			for(int c = 0; c < NUM_ASCII; c++) {
+				if(norm[c] == 0 || (sum > TABLE_SIZE && norm[c] == 1))
+					continue;
+				//bits saved by norm[c] + 1 or lost by norm[c] - 1
+				double gain = sum < TABLE_SIZE ?
+						freq[c] * Math.log((norm[c] + 1.0) / norm[c]) :
+						-freq[c] * Math.log(norm[c] / (norm[c] - 1.0));
+				if(best < 0 || gain > bestGain) {
+					best = c;
+					bestGain = gain;
+				}
+			}
+			norm[best] += sum < TABLE_SIZE ? 1 : -1;
+			sum += sum < TABLE_SIZE ? 1 : -1;
+		}
+		return norm;
+	}
+
+	/**
+	 * Returns the position of the highest bit of a positive number.
+	 * @param value the number.
+	 * @return floor(log2(value)).
+	 */
+	private static int log2(int value) {
+		return 31 - Integer.numberOfLeadingZeros(value);
+	}
+
+	/**
+	 * Estimates the bits with the entropy of the scaled frequencies:
+	 * a character c costs log2(TABLE_SIZE / norm[c]) bits.
+	 */
+	@Override
+	public int numOfBits(FrequencyTable fq) {
+
+		double total = 0;
+		for(HuffNode node : fq.set) {
+			int n = norm[node.getCharacter()];
+			if(n == 0)
+				return -1;
+			total += node.getFrequency() * (TABLE_LOG - Math.log(n) / Math.log(2));
+		}
+		return (int) Math.ceil(total) + TABLE_LOG;
+	}
+
+	@Override
+	public BitSet encode(byte[] data, int off, int len, int[] streamBits) {
+
+		int streams = streamBits.length;
+		BitSet encoded = new BitSet();
+		//k = bitIndex
+		int k = 0;
+		for(int s = 0; s < streams; s++) {
+			int start = k;
+			int state = TABLE_SIZE;
+			//last character of the stream first
+			int last = s + (len - 1 - s) / streams * streams;
+			for(int j = last; j >= s && j < len; j -= streams) {
+				int c = data[off + j];
+				int bits = TABLE_LOG - log2(norm[c]);
+				if((state >>> bits) < norm[c])
+					bits--;
+				for(int i = 0; i < bits; i++) {
+					if(((state >>> i) & 1) == 1)
+						encoded.set(k);
+					k++;
+				}
+				state = TABLE_SIZE + states[first[c] + (state >>> bits) - norm[c]];
+			}
+			//the final state is the first thing the decoder reads
+			for(int i = 0; i < TABLE_LOG; i++) {
+				if((((state - TABLE_SIZE) >>> i) & 1) == 1)
+					encoded.set(k);
+				k++;
+			}
+			streamBits[s] = k - start;
+		}
+		return encoded;
+	}
+
+	@Override
+	public BlockDecoder getDecoder() {
+		return this;
+	}
+
+	/**
+	 * Reads n bits (at most TABLE_LOG) ending at position end.
+	 * @param words the encoded bits, with one more word after the last bit.
+	 * @param end position after the last bit to read.
+	 * @param n number of bits.
+	 * @return the bits, the first one being the lowest.
+	 */
+	private static int read(long[] words, long end, int n) {
+
+		long pos = end - n;
+		int i = (int) (pos >>> 6);
+		int shift = (int) (pos & 63);
+		long bits = words[i] >>> shift;
+		if(shift != 0)
+			bits |= words[i + 1] << (64 - shift);
+		return (int) bits & ((1 << n) - 1);
+	}
+
+	@Override
+	public byte[] decode(long[] words, int[] streamBits, int count) {
+
+		byte[] out = new byte[count];
+		int streams = streamBits.length;
+		//the bits of every stream are read from its end
+		long[] pos = new long[streams];
+		int[] state = new int[streams];
+		long end = 0;
+		for(int s = 0; s < streams; s++) {
+			end += streamBits[s];
+			state[s] = read(words, end, TABLE_LOG);
+			pos[s] = end - TABLE_LOG;
+		}
+		int j = 0;
+		if(streams == 4) {
+			//the 4 states are independent, so their loads can overlap
+			int x0 = state[0], x1 = state[1], x2 = state[2], x3 = state[3];
+			long p0 = pos[0], p1 = pos[1], p2 = pos[2], p3 = pos[3];
+			for(; j + 4 <= count; j += 4) {
+				out[j] = symbol[x0];
+				out[j + 1] = symbol[x1];
+				out[j + 2] = symbol[x2];
+				out[j + 3] = symbol[x3];
+				int n0 = numBits[x0], n1 = numBits[x1], n2 = numBits[x2], n3 = numBits[x3];
+				x0 = newState[x0] + read(words, p0, n0);
+				x1 = newState[x1] + read(words, p1, n1);
+				x2 = newState[x2] + read(words, p2, n2);
+				x3 = newState[x3] + read(words, p3, n3);
+				p0 -= n0; p1 -= n1; p2 -= n2; p3 -= n3;
+			}
+			state[0] = x0; state[1] = x1; state[2] = x2; state[3] = x3;
+			pos[0] = p0; pos[1] = p1; pos[2] = p2; pos[3] = p3;
+		}
+		//any number of streams and the last characters
+		for(; j < count; j++) {
+			int s = j % streams;
+			int x = state[s];
+			out[j] = symbol[x];
+			state[s] = newState[x] + read(words, pos[s], numBits[x]);
+			pos[s] -= numBits[x];
+		}
+		return out;
+	}
+}